@@ -0,0 +1,95 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow;
+
+import arc.math.Rand;
+import arc.struct.Seq;
+
+import fr.zetamap.playerfollow.bench.Bench;
+
+
+/** 
+ * Compares the name lookup of the {@link PlayerIndex} prefix tree with the previous linear scan, 
+ * which normalized and sorted every names at each search. <br>
+ * Names are synthetic, with colors, glyphs and shared prefixes, as players are not available outside of a server.
+ */
+public class PlayerIndexBenchmark {
+  public static int players = 250, lookups = 10_000;
+  static final String[] colors = {"", "[red]", "[#ff00ff]", "[accent]"}, 
+                        syllables = {"ka", "zu", "mi", "ro", "ta", "ne", "xo", "li", "player", "pro", " "};
+  
+  public static void main(String[] args) {
+    Rand rand = new Rand(42);
+    String[] names = new String[players];
+    PlayerIndex.Node<String> root = new PlayerIndex.Node<>();
+    for (int i=0; i<players; i++) {
+      names[i] = name(rand);
+      root.insert(Players.normalizeName(names[i]) + " ", 0, names[i]);
+    }
+    
+    // Searches are normalized once, with the rest of the command
+    String[] searches = new String[lookups];
+    for (int i=0; i<lookups; i++) 
+      searches[i] = Players.normalizeName(names[rand.random(players-1)] + " 2 arc") + " ";
+    
+    int mismatches = 0;
+    for (String search : searches) {
+      PlayerIndex.Node<String> node = root.longest(search);
+      String expected = linear(names, search), found = node == null ? null : Players.normalizeName(node.values.first()) + " ";
+      if (expected == null ? found != null : !expected.equals(found)) mismatches++;
+    }
+    System.out.println(players + " players, " + mismatches + " different results");
+    
+    double linear = Bench.run("linear scan, " + players + " players", lookups, () -> {
+      for (String search : searches) Bench.sink += linear(names, search).length();
+    });
+    double trie = Bench.run("prefix tree, " + players + " players", lookups, () -> {
+      for (String search : searches) Bench.sink += root.longest(search).depth;
+    });
+    System.out.printf("speedup: x%.1f%n", linear / trie);
+  }
+  
+  /** The previous search: normalizes and sorts all names, then takes the longest one matching. */
+  static String linear(String[] names, String search) {
+    Seq<String> stripped = new Seq<>(names.length);
+    for (String name : names) stripped.add(Players.normalizeName(name) + " ");
+    stripped.sort(s -> s.length());
+    
+    for (int i=stripped.size-1; i>=0; i--) {
+      if (search.startsWith(stripped.get(i))) return stripped.get(i);
+    }
+    return null;
+  }
+  
+  static String name(Rand rand) {
+    StringBuilder builder = new StringBuilder(colors[rand.random(colors.length-1)]);
+    for (int i=0, n=1+rand.random(3); i<n; i++) builder.append(syllables[rand.random(syllables.length-1)]);
+    // Some names have glyphs, like team icons
+    if (rand.chance(0.2)) builder.append((char)(0xE800 + rand.random(32)));
+    return builder.append(rand.random(999)).toString();
+  }
+}
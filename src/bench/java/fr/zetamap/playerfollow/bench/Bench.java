@@ -0,0 +1,59 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.bench;
+
+import java.util.Arrays;
+
+
+/** Minimal timing harness, so benchmarks can be run without dependencies. */
+public class Bench {
+  public static int warmups = 10, rounds = 15;
+  /** Keeps results alive, so the JIT cannot remove the benchmarked code. */
+  public static volatile double sink;
+  
+  /** 
+   * Runs {@code round} for some warmup then timed rounds, and prints the median time of one operation. 
+   * 
+   * @param ops the number of operations done by one round.
+   * @return the median time of one operation, in nanoseconds.
+   */
+  public static double run(String name, long ops, Runnable round) {
+    for (int i=0; i<warmups; i++) round.run();
+    
+    long[] times = new long[rounds];
+    for (int i=0; i<rounds; i++) {
+      long start = System.nanoTime();
+      round.run();
+      times[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(times);
+    
+    double time = times[rounds / 2] / (double)ops;
+    System.out.printf("%-48s %12.2f ns/op%n", name, time);
+    return time;
+  }
+}
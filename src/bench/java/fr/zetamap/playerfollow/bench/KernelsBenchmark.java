@@ -0,0 +1,77 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.bench;
+
+import arc.math.Mathf;
+import arc.math.Rand;
+
+import fr.zetamap.playerfollow.api.PlacementKernels;
+
+
+/** 
+ * Compares the scalar {@link PlacementKernels} with the loaded ones, 
+ * which are the vectorized kernels when run on Java 21+ with {@code --add-modules jdk.incubator.vector}.
+ */
+public class KernelsBenchmark {
+  public static void main(String[] args) {
+    PlacementKernels scalar = new PlacementKernels(), loaded = PlacementKernels.instance;
+    boolean vectorized = loaded.getClass() != PlacementKernels.class;
+    if (!vectorized) 
+      System.out.println("Vectorized kernels not loaded, only the scalar ones are measured.");
+    
+    Rand rand = new Rand(42);
+    for (int size : new int[]{16, 128, 1024, 8192}) {
+      float[] xs = new float[size], ys = new float[size], txs = new float[size], tys = new float[size], 
+              alphas = new float[size], outX = new float[size], outY = new float[size];
+      for (int i=0; i<size; i++) {
+        xs[i] = rand.range(100f);
+        ys[i] = rand.range(100f);
+        txs[i] = rand.range(100f);
+        tys[i] = rand.range(100f);
+        alphas[i] = rand.nextFloat();
+      }
+      float cos = Mathf.cosDeg(37), sin = Mathf.sinDeg(37);
+      int reps = Math.max(1, 2_000_000 / size);
+      
+      double[] rotate = new double[2], lerp = new double[2];
+      PlacementKernels[] kernels = vectorized ? new PlacementKernels[]{scalar, loaded} : new PlacementKernels[]{scalar};
+      for (int k=0; k<kernels.length; k++) {
+        PlacementKernels kernel = kernels[k];
+        rotate[k] = Bench.run(kernel.name() + " rotate, " + size + " slots", (long)reps * size, () -> {
+          for (int r=0; r<reps; r++) kernel.rotate(xs, ys, 0, size, cos, sin, outX, outY);
+          Bench.sink += outX[size-1];
+        });
+        lerp[k] = Bench.run(kernel.name() + " lerp, " + size + " slots", (long)reps * size, () -> {
+          for (int r=0; r<reps; r++) kernel.lerp(xs, ys, txs, tys, alphas, 0, size, outX, outY);
+          Bench.sink += outX[size-1];
+        });
+      }
+      if (kernels.length > 1) 
+        System.out.printf("speedup at %d slots: rotate x%.2f, lerp x%.2f%n", size, rotate[0] / rotate[1], lerp[0] / lerp[1]);
+    }
+  }
+}
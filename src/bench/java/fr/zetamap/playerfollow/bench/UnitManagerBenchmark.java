@@ -0,0 +1,100 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.bench;
+
+import arc.math.Mathf;
+import arc.math.Rand;
+import arc.struct.Seq;
+
+import fr.zetamap.playerfollow.FollowModes;
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+import fr.zetamap.playerfollow.api.FollowMode;
+import fr.zetamap.playerfollow.api.IndexedFollowManager;
+
+
+/** 
+ * Updates {@link #followers} synthetic followers split between {@link #leaders} moving leaders, 
+ * through the same {@link IndexedFollowManager} as units, but headless and with {@link TraceEntity}. <br>
+ * Each tick, {@link #churn} followers change of leader. 
+ * Modes to measure can be given as arguments, all default modes are measured by default.
+ */
+public class UnitManagerBenchmark {
+  public static int followers = 5000, leaders = 50, ticks = 60, churn = 25;
+  public static float worldSize = 500 * 8;
+  
+  public static void main(String[] args) {
+    Seq<String> modes = new Seq<>(args);
+    if (modes.isEmpty()) modes.addAll(FollowModes.arc.name, FollowModes.joint.name, 
+                                      FollowModes.snake.name, FollowModes.orbit.name);
+    modes.each(UnitManagerBenchmark::run);
+  }
+  
+  static void run(String name) {
+    FollowMode<TraceEntity> mode = FollowMode.of(name);
+    if (mode == null) throw new IllegalArgumentException("Unknown mode: " + name);
+    
+    IndexedFollowManager<TraceEntity> manager = 
+        new IndexedFollowManager<>(TraceEntity.accessor, (f, p) -> {}, f -> f.key, 1);
+    Rand rand = new Rand(42);
+    TraceEntity[] heads = new TraceEntity[leaders], units = new TraceEntity[followers];
+    for (int i=0; i<leaders; i++) {
+      heads[i] = entity(i, "leader", rand);
+    }
+    for (int i=0; i<followers; i++) {
+      units[i] = entity(leaders + i, "unit", rand);
+      manager.follow(units[i], heads[i % leaders], mode);
+    }
+    
+    int[] tick = {0};
+    Bench.run(name + ", " + followers + " followers, " + leaders + " leaders", (long)ticks * followers, () -> {
+      for (int t=0; t<ticks; t++, tick[0]++) {
+        for (int i=0; i<leaders; i++) {
+          TraceEntity head = heads[i];
+          head.rotation = (head.rotation + 2f) % 360f;
+          head.x = Mathf.clamp(head.x + Mathf.cosDeg(head.rotation) * 4f, 0, worldSize);
+          head.y = Mathf.clamp(head.y + Mathf.sinDeg(head.rotation) * 4f, 0, worldSize);
+        }
+        for (int i=0; i<churn; i++) {
+          manager.follow(units[rand.random(followers - 1)], heads[rand.random(leaders - 1)], mode);
+        }
+        manager.updateNow(worldSize, worldSize);
+      }
+    });
+    
+    System.out.printf("  sent %d, idle %d, suppressed %d, failed %d positions%n", manager.stats.sent.sum(), 
+                      manager.stats.idle.sum(), manager.stats.suppressed.sum(), manager.stats.failed.sum());
+  }
+  
+  static TraceEntity entity(int id, String prefix, Rand rand) {
+    TraceEntity entity = new TraceEntity(id, prefix + id);
+    entity.x = rand.random(worldSize);
+    entity.y = rand.random(worldSize);
+    entity.rotation = rand.random(360f);
+    entity.hitSize = 8f;
+    return entity;
+  }
+}
@@ -12,4 +12,13 @@ public class FollowModes {
     joint = FollowMode.add("joint", JointFollow.class, JointFollow::new),
     snake = FollowMode.add("snake", SnakeFollow.class, SnakeFollow::new),
     orbit = FollowMode.add("orbit", OrbitFollow.class, OrbitFollow::new);
+  
+  // Initial costs, in microseconds per update, only used until enough updates have been measured. 
+  // The costs are then fitted to the measured update times, see FollowMode#calibrate.
+  static {
+    arc.setCost(2f, 0.3f, 1f);
+    joint.setCost(1f, 0.2f, 1f);
+    snake.setCost(3f, 0.35f, 1f);
+    orbit.setCost(2f, 0.4f, 1f);
+  }
 }
@@ -0,0 +1,318 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.IntMap;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+
+import fr.zetamap.playerfollow.api.Accessor;
+import fr.zetamap.playerfollow.api.EntityBuffer;
+import fr.zetamap.playerfollow.api.Follow;
+import fr.zetamap.playerfollow.api.FollowMode;
+import fr.zetamap.playerfollow.api.FollowRecorder;
+import fr.zetamap.playerfollow.api.Placements;
+
+
+/** 
+ * Replays a trace recorded by {@link FollowRecorder}, outside of the server. <br>
+ * Follows are rebuilt from the trace, with their recorded mode or another one, and each update is timed.
+ * When the trace contains the computed positions, they are compared with the replayed ones. 
+ * Like the manager, entities are captured before each update, and positions are compared before being separated. <br>
+ * Usage: {@code java -cp <plugin>:<server> fr.zetamap.playerfollow.FollowReplay <trace> [mode]}
+ */
+public class FollowReplay {
+  public final Path file;
+  /** Mode used for all follows, or {@code null} to use the recorded ones. */
+  public final FollowMode<TraceEntity> mode;
+  
+  protected final IntMap<TraceEntity> entities = new IntMap<>();
+  /** Captures entities before each update, like the manager, so idle follows are skipped the same way. */
+  protected final EntityBuffer<TraceEntity> buffer = new EntityBuffer<>(TraceEntity.accessor);
+  protected final IntMap<String> modes = new IntMap<>();
+  protected final ObjectMap<TraceEntity, Follow<TraceEntity>> follows = new ObjectMap<>();
+  /** Follows of the current tick, in the recorded order. */
+  protected final Seq<Follow<TraceEntity>> tick = new Seq<>();
+  protected final Placements<TraceEntity> placements = new Placements<>();
+  protected final Seq<TraceEntity> members = new Seq<>();
+  protected final Vec2 temp = new Vec2();
+  
+  protected long[] times = new long[1024];
+  protected int ticks, compared;
+  protected double totalError;
+  protected float maxError;
+  
+  public FollowReplay(Path file, FollowMode<TraceEntity> mode) {
+    this.file = file;
+    this.mode = mode;
+  }
+  
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println("Usage: FollowReplay <trace> [mode]");
+      return;
+    }
+    
+    // Loads the class to register the default modes
+    FollowMode.of(FollowModes.arc.name);
+    FollowMode<TraceEntity> mode = null;
+    if (args.length > 1 && (mode = FollowMode.of(args[1])) == null) {
+      System.out.println("Mode '" + args[1] + "' not found.");
+      return;
+    }
+    
+    FollowReplay replay = new FollowReplay(Paths.get(args[0]), mode);
+    replay.run();
+    System.out.println(replay.summary());
+  }
+  
+  /** Streams the whole trace, and replays each recorded update. */
+  public void run() throws IOException {
+    try (Reader reader = new Reader(file)) {
+      if (reader.getInt() != FollowRecorder.MAGIC) throw new IOException("Not a follow trace: " + file);
+
+      while (reader.available()) {
+        byte type = reader.get();
+        switch (type) {
+          case FollowRecorder.ENTITY: {
+            int id = reader.getInt();
+            entities.put(id, new TraceEntity(id, reader.getString()));
+            break;
+          }
+          case FollowRecorder.MODE: modes.put(reader.getInt(), reader.getString()); break;
+          case FollowRecorder.TICK:
+            if (!tick.isEmpty()) endTick();
+            reader.getInt();
+            break;
+          case FollowRecorder.FOLLOW: readFollow(reader); break;
+          case FollowRecorder.OUTPUT: compare(entities.get(reader.getInt()), reader.getFloat(), reader.getFloat()); break;
+          default: throw new IOException("Unknown record type " + type + " in " + file);
+        }
+      }
+      if (!tick.isEmpty()) endTick();
+    }
+  }
+  
+  protected void readFollow(Reader reader) throws IOException {
+    TraceEntity leader = entities.get(reader.getInt());
+    String modeName = modes.get(reader.getShort());
+    leader.read(reader);
+    
+    Follow<TraceEntity> follow = follows.get(leader);
+    FollowMode<TraceEntity> m = mode != null ? mode : modeName == null ? null : FollowMode.of(modeName);
+    if (m == null) throw new IOException("Mode '" + modeName + "' not found");
+    if (follow == null || FollowMode.of(follow) != m) {
+      Follow<TraceEntity> last = follow;
+      follow = m.create(leader, buffer);
+      if (last != null) follow.takeAll(last);
+      follows.put(leader, follow);
+    }
+    
+    int count = reader.getInt();
+    if (count >= 0) {
+      members.clear();
+      for (int i=0; i<count; i++) members.add(entities.get(reader.getInt()));
+      syncMembers(follow);
+    }
+    
+    Seq<TraceEntity> followers = follow.followers();
+    for (int i=0; i<followers.size; i++) followers.get(i).setSize(reader.getFloat());
+    tick.add(follow);
+  }
+  
+  /** Applies the recorded {@link #members} to the {@code follow}, by removing and adding only the differences. */
+  protected void syncMembers(Follow<TraceEntity> follow) {
+    Seq<TraceEntity> followers = follow.followers();
+    for (int i=followers.size-1; i>=0; i--) {
+      if (!members.contains(followers.get(i), true)) follow.remove(followers.get(i));
+    }
+    for (int i=0; i<members.size; i++) {
+      if (!follow.contains(members.get(i))) follow.add(members.get(i));
+    }
+    
+    // Recorded order can differ, after a removal in the middle for example
+    if (!followers.equals(members)) {
+      follow.clear();
+      follow.addAll(members);
+    }
+  }
+  
+  /** Computes and applies the follows of the current tick, in the recorded order. */
+  protected void endTick() {
+    placements.clear();
+    long start = System.nanoTime();
+    buffer.capture(tick);
+    
+    for (int i=0; i<tick.size; i++) {
+      Follow<TraceEntity> f = tick.get(i);
+      if (f.shouldRemove()) continue;
+      int leader = placements.indexOf(f.followed());
+      f.compute(leader == -1 ? f.followed() : placements.get(leader, temp), (fp, pos) -> placements.add(f, fp, pos));
+    }
+    for (int i=0, n=placements.size(); i<n; i++) 
+      placements.follows.get(i).apply(placements.followers.get(i), placements.get(i, temp));
+    
+    if (ticks == times.length) times = Arrays.copyOf(times, ticks * 2);
+    times[ticks++] = System.nanoTime() - start;
+    tick.clear();
+  }
+  
+  /** Compares a recorded position with the replayed one, of the last computed tick. */
+  protected void compare(TraceEntity follower, float x, float y) {
+    // Outputs are recorded after the inputs of their tick, so compute it first
+    if (!tick.isEmpty()) endTick();
+    int i = follower == null ? -1 : placements.indexOf(follower);
+    if (i == -1) return;
+    
+    float error = placements.get(i, temp).dst(x, y);
+    totalError += error;
+    maxError = Math.max(maxError, error);
+    compared++;
+  }
+  
+  public String summary() {
+    long[] sorted = Arrays.copyOf(times, ticks);
+    Arrays.sort(sorted);
+    long total = 0;
+    for (long t : sorted) total += t;
+    
+    StringBuilder builder = new StringBuilder();
+    builder.append("Replayed ").append(ticks).append(" updates of ").append(entities.size).append(" entities")
+           .append(mode == null ? "" : " with mode " + mode.name).append('\n');
+    if (ticks != 0) {
+      builder.append(String.format("Update time: avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", 
+          total / 1e6 / ticks, sorted[ticks / 2] / 1e6, sorted[Math.min(ticks-1, ticks * 99 / 100)] / 1e6, 
+          sorted[ticks-1] / 1e6));
+    }
+    if (compared != 0) {
+      builder.append(String.format("Position error: avg %.3f, max %.3f, over %d positions%n", 
+          totalError / compared, maxError, compared));
+    }
+    return builder.toString();
+  }
+  
+  
+  /** Entity rebuilt from a trace. */
+  public static class TraceEntity implements Position {
+    public static final Accessor<TraceEntity> accessor = new Accessor<TraceEntity>() {
+      public boolean dead(TraceEntity entity) { return entity.dead; }
+      public float rotation(TraceEntity entity) { return entity.rotation; }
+      public float hitSize(TraceEntity entity) { return entity.hitSize; }
+      public int id(TraceEntity entity) { return entity.id; }
+      public void setPosition(TraceEntity entity, Vec2 position) { entity.x = position.x; entity.y = position.y; }
+    };
+    
+    /** Id of the entity in the trace. */
+    public final int id;
+    public final String key;
+    public float x, y, rotation, hitSize;
+    public boolean dead;
+    
+    public TraceEntity(int id, String key) {
+      this.id = id;
+      this.key = key;
+    }
+    
+    protected void read(Reader reader) throws IOException {
+      x = reader.getFloat();
+      y = reader.getFloat();
+      rotation = reader.getFloat();
+      setSize(reader.getFloat());
+    }
+    
+    /** A negative size means that the entity is dead. */
+    protected void setSize(float size) {
+      dead = size < 0;
+      if (!dead) hitSize = size;
+    }
+    
+    @Override
+    public float getX() { return x; }
+    @Override
+    public float getY() { return y; }
+    @Override
+    public String toString() { return key; }
+  }
+  
+  
+  /** Buffered reader of a trace, refilled when needed. */
+  protected static class Reader implements AutoCloseable {
+    protected final FileChannel channel;
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    
+    protected Reader(Path file) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      buffer.flip();
+    }
+    
+    protected boolean available() throws IOException {
+      return buffer.hasRemaining() || fill(1);
+    }
+    
+    protected byte get() throws IOException { require(1); return buffer.get(); }
+    protected short getShort() throws IOException { require(2); return buffer.getShort(); }
+    protected int getInt() throws IOException { require(4); return buffer.getInt(); }
+    protected float getFloat() throws IOException { require(4); return buffer.getFloat(); }
+    
+    protected String getString() throws IOException {
+      byte[] bytes = new byte[getShort() & 0xffff];
+      require(bytes.length);
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    protected void require(int bytes) throws IOException {
+      if (buffer.remaining() < bytes && !fill(bytes)) throw new EOFException("Truncated trace");
+    }
+    
+    /** @return whether at least {@code bytes} are available after filling. */
+    protected boolean fill(int bytes) throws IOException {
+      buffer.compact();
+      while (buffer.position() < bytes && channel.read(buffer) != -1);
+      buffer.flip();
+      return buffer.remaining() >= bytes;
+    }
+    
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
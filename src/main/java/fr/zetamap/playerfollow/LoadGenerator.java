@@ -0,0 +1,239 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow;
+
+import arc.Events;
+import arc.math.Mathf;
+import arc.struct.Seq;
+import arc.util.Strings;
+import arc.util.Time;
+
+import mindustry.content.StatusEffects;
+import mindustry.content.UnitTypes;
+import mindustry.entities.units.AIController;
+import mindustry.game.EventType;
+import mindustry.game.Team;
+import mindustry.gen.Groups;
+import mindustry.gen.Player;
+import mindustry.gen.Unit;
+import mindustry.type.UnitType;
+
+import fr.zetamap.playerfollow.api.FollowMode;
+import fr.zetamap.playerfollow.api.UnitFollowManager;
+
+
+/** 
+ * Synthetic load, to know how many followers a server can take. <br>
+ * Disarmed units are spawned and attached to a target, or to random players, 
+ * and are moved from a follow to another at the churn rate. <br>
+ * The cost is the time spent by the manager, on the main thread at the sync points, and computing follows. 
+ * Tick intervals are not used, as a server sleeps to keep its tick rate until it is saturated. <br>
+ * Units are removed when stopped, or when the world changes.
+ */
+public class LoadGenerator {
+  public static int maxUnits = 5000;
+  /** Units spawned per tick, to not measure the spawn itself. */
+  public static int spawnPerTick = 50;
+  /** Duration of a server tick, in milliseconds, to give costs as a share of it. */
+  public static float tickMillis = 1000f / 60f;
+  /** Seconds between checks of follows with a dead target. */
+  public static float retargetInterval = 1f;
+  
+  private static final Seq<Unit> units = new Seq<>();
+  private static final Seq<FollowMode<Unit>> modes = new Seq<>();
+  private static UnitFollowManager manager;
+  private static UnitType type;
+  /** {@code null} means random players. */
+  private static Player target;
+  /** {@code null} means all modes, in turn. */
+  private static FollowMode<Unit> mode;
+  private static int count, modeI;
+  private static float churnRate, churnAccum, retargetTimer;
+  /** Ticks since the start, and time spent spawning and moving units. */
+  private static long ticks, generatorNanos;
+  private static long churns, startTime;
+  private static boolean initialized, running;
+  
+  public static void init() {
+    if (initialized) return;
+    manager = UnitFollowManager.instance();
+    
+    Events.run(EventType.Trigger.update, LoadGenerator::update);
+    // Units are already removed with the world, but not their follows
+    Events.on(EventType.WorldLoadEvent.class, e -> stop());
+    Events.on(EventType.PlayerLeave.class, e -> {
+      if (e.player == target) target = null;
+    });
+    initialized = true;
+  }
+  
+  public static boolean running() {
+    return running;
+  }
+  
+  /** 
+   * Spawns {@code count} units following the {@code target}, 
+   * or random players if {@code null}, with the {@code mode}, or all modes in turn if {@code null}. <br>
+   * {@code churn} units per second leave their follow to join another one.
+   */
+  @SuppressWarnings("unchecked")
+  public static void start(int count, Player target, FollowMode<Unit> mode, float churn) {
+    if (running) stop();
+    init();
+    
+    LoadGenerator.count = Math.min(count, maxUnits);
+    LoadGenerator.target = target;
+    LoadGenerator.mode = mode;
+    churnRate = churn;
+    churnAccum = retargetTimer = 0;
+    churns = ticks = generatorNanos = 0;
+    startTime = Time.millis();
+    manager.stats.reset();
+    
+    type = UnitTypes.flare;
+    modes.clear();
+    FollowMode.each(m -> modes.add((FollowMode<Unit>)m));
+    running = true;
+  }
+  
+  /** Removes all synthetic units, and returns the report. */
+  public static String stop() {
+    if (!running) return null;
+    running = false;
+    // Before removing units, as the report includes the projected cost of their follows
+    String report = report();
+    
+    units.each(u -> {
+      manager.unfollow(u);
+      u.remove();
+    });
+    units.clear();
+    return report;
+  }
+  
+  public static String report() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(Strings.format("Synthetic load: @/@ units, @ churns in @s.\n", units.size, count, churns, 
+                                  (Time.millis() - startTime) / 1000));
+    if (ticks != 0) {
+      float sync = manager.stats.syncNanos.sum() / 1e6f / ticks, generator = generatorNanos / 1e6f / ticks;
+      builder.append(Strings.format("Main thread per tick: follows @ ms (@% of a @ ms tick), load generator @ ms.\n", 
+                                    Strings.fixed(sync, 3), Strings.fixed(sync / tickMillis * 100, 1), 
+                                    Strings.fixed(tickMillis, 1), Strings.fixed(generator, 3)));
+      long updates = manager.stats.updates.sum();
+      float average = updates == 0 ? 0 : manager.stats.updateNanos.sum() / 1e6f / updates;
+      builder.append(Strings.format("Follow updates: @ cycles, avg @ ms, max @ ms (@% of a tick, off the main thread).\n", 
+                                    updates, Strings.fixed(average, 2), 
+                                    Strings.fixed(manager.stats.maxUpdateNanos.get() / 1e6f, 2), 
+                                    Strings.fixed(average / tickMillis * 100, 1)));
+      // To calibrate the cost model of modes
+      manager.admission.update();
+      builder.append(Strings.format("Projected cost: @ ms, measured: @ us per follower.", 
+                                    Strings.fixed(manager.admission.projected(), 2), 
+                                    manager.stats.followers == 0 ? "?" : 
+                                      Strings.fixed(average * 1000 / manager.stats.followers, 3)));
+    }
+    return builder.toString();
+  }
+  
+  protected static void update() {
+    if (!running) return;
+    long start = Time.nanos();
+    ticks++;
+    
+    // Spawn progressively
+    for (int i=0; i<spawnPerTick && units.size < count; i++) {
+      Unit unit = spawn();
+      if (unit == null) break;
+      units.add(unit);
+    }
+    
+    if ((retargetTimer += Time.delta) >= retargetInterval * 60) {
+      retargetTimer = 0;
+      retarget();
+    }
+    
+    churnAccum += churnRate * Time.delta / 60f;
+    for (; churnAccum >= 1 && !units.isEmpty(); churnAccum--) churn();
+    generatorNanos += Time.nanos() - start;
+  }
+  
+  /** Moves a random unit to another follow, replacing it if dead. */
+  protected static void churn() {
+    int i = Mathf.random(units.size-1);
+    Unit unit = units.get(i);
+    manager.unfollow(unit);
+    churns++;
+    
+    if (!unit.isValid()) {
+      unit = spawn();
+      if (unit == null) units.remove(i);
+      else units.set(i, unit);
+    } else attach(unit);
+  }
+  
+  /** 
+   * Attaches units following nobody, e.g. after a respawn of the followed player, 
+   * as the manager removes follows of dead targets.
+   */
+  protected static void retarget() {
+    units.each(u -> u.isValid() && manager.leader(u) == null, LoadGenerator::attach);
+  }
+  
+  protected static Unit spawn() {
+    Unit leader = leader();
+    Team team = leader == null ? Team.sharded : leader.team;
+    float x = leader == null ? 0 : leader.x, y = leader == null ? 0 : leader.y;
+    
+    Unit unit = type.spawn(team, x + Mathf.range(8f), y + Mathf.range(8f));
+    // Don't let them shoot or wander
+    unit.apply(StatusEffects.disarmed, Float.MAX_VALUE);
+    unit.controller(new AIController());
+    if (leader != null) attach(unit, leader);
+    return unit;
+  }
+  
+  protected static void attach(Unit unit) {
+    Unit leader = leader();
+    if (leader != null) attach(unit, leader);
+  }
+  
+  protected static void attach(Unit unit, Unit leader) {
+    FollowMode<Unit> m = mode;
+    if (m == null && manager.get(leader) == null) m = modes.get(modeI++ % modes.size);
+    manager.follow(unit, leader, m);
+  }
+  
+  /** @return the unit of the target, or of a random player, or {@code null} if none is alive. */
+  protected static Unit leader() {
+    if (target != null) return target.dead() ? null : target.unit();
+    if (Groups.player.isEmpty()) return null;
+    Player player = Groups.player.index(Mathf.random(Groups.player.size()-1));
+    return player == null || player.dead() ? null : player.unit();
+  }
+}
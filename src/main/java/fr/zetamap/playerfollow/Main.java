@@ -26,18 +26,32 @@
 
 package fr.zetamap.playerfollow;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+import arc.ApplicationListener;
 import arc.Core;
 import arc.Events;
 import arc.util.CommandHandler;
 import arc.util.Log;
+import arc.util.Strings;
+import arc.util.Time;
 
+import mindustry.Vars;
 import mindustry.game.EventType;
+import mindustry.gen.Groups;
 import mindustry.gen.Player;
+import mindustry.gen.Unit;
 import mindustry.mod.Plugin;
 
-import fr.zetamap.playerfollow.api.AbstractPlayerFollow;
+import fr.zetamap.playerfollow.api.Admission;
+import fr.zetamap.playerfollow.api.Follow;
+import fr.zetamap.playerfollow.api.FollowManager;
 import fr.zetamap.playerfollow.api.FollowMode;
+import fr.zetamap.playerfollow.api.FollowRecorder;
+import fr.zetamap.playerfollow.api.Passability;
 import fr.zetamap.playerfollow.api.PlayerFollowManager;
+import fr.zetamap.playerfollow.api.UnitFollowManager;
 
 
 public class Main extends Plugin {
@@ -55,13 +69,18 @@ public class Main extends Plugin {
       Core.settings.put("player-follow-mode", defaultMode.name);
     } else defaultMode = mode;
     
+    // Index players to quickly find them in commands
+    PlayerIndex.init();
+    // Keep followers off walls and buildings
+    Passability.init();
+    
     // Register an event to remove player from followed target
     Events.on(EventType.PlayerLeave.class, e -> {
       if (e.player == null) return;
-      AbstractPlayerFollow follow = manager.get(e.player);
+      Follow<Player> follow = manager.get(e.player);
 
       if (follow != null) {
-        follow.message("The followed player disconnected! ([white]@[orange])", follow.followed().name);
+        Players.warnAll(follow.followers(), "The followed player disconnected! ([white]@[orange])", follow.followed().name);
         manager.remove(follow);
       } else manager.removeFollower(e.player);
     
@@ -69,20 +88,58 @@ public class Main extends Plugin {
     
     // Start the follow updater
     manager = PlayerFollowManager.instance();
+    manager.separation = Core.settings.getBool("player-follow-separation", false);
+    manager.avoidSolids = Core.settings.getBool("player-follow-avoid-solids", true);
+    manager.degradation.enabled = Core.settings.getBool("player-follow-degradation", true);
+    manager.degradation.budget = Core.settings.getFloat("player-follow-budget", manager.degradation.budget);
+    manager.motion.leadMillis = Core.settings.getFloat("player-follow-lead", manager.motion.leadMillis);
+    manager.admission.enabled = Core.settings.getBool("player-follow-admission", true);
+    manager.admission.budget = Core.settings.getFloat("player-follow-admission-budget", manager.admission.budget);
+    manager.admission.maxFollowers = Core.settings.getInt("player-follow-max-followers", 0);
+    manager.admission.maxFollows = Core.settings.getInt("player-follow-max-follows", 0);
+    manager.watchdog.enabled = Core.settings.getBool("player-follow-watchdog", true);
+    manager.watchdog.threshold = Core.settings.getFloat("player-follow-watchdog-threshold", manager.watchdog.threshold);
+    
+    // Tell followers and admins when a follow is too slow, and updated less often
+    manager.watchdog.quarantined = f -> {
+      Players.warnAll(f.followers(), "This follow is too slow to update, positions will be updated less often.");
+      Groups.player.each(p -> p.admin, p -> 
+        Players.warn(p, "Follow of '[white]@[orange]' quarantined, it is too slow to update.", f.followed().name));
+    };
+    manager.watchdog.released = f -> {
+      Players.okAll(f.followers(), "This follow is updated normally again.");
+      Groups.player.each(p -> p.admin, p -> 
+        Players.ok(p, "Follow of '[white]@[green]' released from quarantine.", f.followed().name));
+    };
+    FollowManager.Updater.setThreads(Core.settings.getInt("player-follow-threads", 0), 
+                                     Core.settings.getInt("player-follow-queue", 64));
+    
+    // Restore follows of the previous session, when players come back
+    manager.snapshot.load();
+    Events.on(EventType.PlayerJoin.class, e -> manager.snapshot.restore(e.player));
+    Core.app.addListener(new ApplicationListener() {
+      public void dispose() {
+        FollowManager.Updater.shutdown();
+        manager.snapshot.write();
+        if (manager.recorder != null) manager.recorder.close();
+        manager.positions.clear();
+        LoadGenerator.stop();
+      }
+    });
   }
 
   @Override
   public void registerClientCommands(CommandHandler handler) {
     handler.<Player>register("follow", "[player|#unitID|UUID] [mode...]", "Follow/Unfollow a specific player.", 
     (args, player) -> {
-      AbstractPlayerFollow follow;
+      Follow<Player> follow;
       
       if (args.length == 0) {
         follow = manager.find(player);
         
         if (follow != null) {
           follow.remove(player);
-          Players.ok(player, "You stopped following '[white]@[green]'.", follow.followed.name);
+          Players.ok(player, "You stopped following '[white]@[green]'.", follow.followed().name);
         } else Players.warn(player, "You are currently following nobody.");
         return;
       }
@@ -97,19 +154,17 @@ public class Main extends Plugin {
       } else if (target.player == player) {
         Players.err(player, "You cannot follow yourself...");
         return;
-      // Check for a potential follow loop
-      } else if ((follow = manager.get(player)) != null && follow.contains(target.player)) {
-        Players.err(player, "You cannot follow a player who already follows you.");
+      // Check for a potential follow loop, even through other players
+      } else if (manager.forest.wouldLoop(player, target.player)) {
+        Players.err(player, "You cannot follow a player who already follows you, even indirectly.");
         return;
       }
 
       follow = manager.get(target.player);
+      FollowMode<Player> mode = defaultMode;
 
-      // Create a new follow, if none exists for the target
+      // Use the follow mode if specified, for a new follow
       if (follow == null) {
-        FollowMode<Player> mode = defaultMode;
-        
-        // Use the follow mode if specified
         if (target.rest.length != 0) {
           String modeName = String.join(" ", target.rest).trim();
           mode = FollowMode.of(modeName);
@@ -120,8 +175,6 @@ public class Main extends Plugin {
           }
         }
         
-        follow = manager.add(mode, target.player);
-        
       // Check whether the player is already following the target
       } else if (follow.contains(player)) {
         Players.warn(player, "You are already following this player.");
@@ -131,10 +184,25 @@ public class Main extends Plugin {
       } else if (target.rest.length != 0) 
         Players.warn(player, "Follow mode ignored because another follower set it.");
 
-      // Remove the player from followers of a potential another target, and add it to this target
-      manager.removeFollower(player);
-      follow.add(player);
-      Players.ok(player, "You are now following '[white]@[green]'.", target.player.name);
+      // Remove the player from followers of a potential another target, and add it to this target, if admitted
+      Admission.Result result = manager.join(player, target.player, mode);
+      switch (result) {
+        case FULL:
+          Players.err(player, "'[white]@[scarlet]' has too many followers, or there are too many follows.", 
+                      target.player.name);
+          return;
+        case OVERLOADED:
+          Players.err(player, "The server is too busy to follow '[white]@[scarlet]', try again later.", 
+                      target.player.name);
+          return;
+        case REDIRECTED:
+          Players.warnAll(manager.get(target.player).followers(), 
+                          "The server is busy, this follow has been switched to the [cyan]@[] mode.", 
+                          manager.admission.cheapMode().name);
+          // fall through
+        default:
+          Players.ok(player, "You are now following '[white]@[green]'.", target.player.name);
+      }
     });
     
     handler.<Player>register("follow-stop", "[player|#unitID|UUID...]", "Remove all players currently following a target.", 
@@ -157,7 +225,7 @@ public class Main extends Plugin {
         target = t.player;
       } else target = player;
 
-      AbstractPlayerFollow follow = manager.get(target);
+      Follow<Player> follow = manager.get(target);
         
       if (follow == null) {
         if (target == player) Players.err(player, "You are currently followed by no one.");
@@ -165,8 +233,9 @@ public class Main extends Plugin {
         return;
       }
     
+      // Notify before removing, as removing the follow also clears followers
+      Players.warnAll(follow.followers(), "'@[orange]' requested to not be followed!", follow.followed().name);
       manager.remove(follow); 
-      follow.message("'@[orange]' requested to not be followed!", follow.followed.name);
       Players.ok(player, "Follow stopped and followers notified.");
     });
     
@@ -174,9 +243,9 @@ public class Main extends Plugin {
     (args, player) -> {
       if (args.length == 0) {
         Players.info(player, "Default mode is [cyan]@[] follow.", defaultMode.name);
-        String[] message = {"Available modes: \n"};
-        FollowMode.each(m -> message[0] += "  - [cyan]" + m.name + "[]\n");
-        Players.info(player, message[0]);
+        StringBuilder message = new StringBuilder("Available modes: \n");
+        FollowMode.each(m -> message.append("  - [cyan]").append(m.name).append("[]\n"));
+        player.sendMessage(message.toString());
         return;
       }
 
@@ -208,5 +277,190 @@ public class Main extends Plugin {
         Players.ok(player, "Forced new mode to all players.");
       }
     });
+    
+    handler.<Player>register("follow-trace", "[start|stop]", "Record follow updates in a trace, to replay them offline.", 
+    (args, player) -> {
+      // Only admins can do that
+      if (!player.admin) {
+        Players.errCommandUseDenied(player);
+        return;
+      }
+      
+      FollowRecorder<Player> recorder = manager.recorder;
+      if (args.length == 0) {
+        if (recorder == null || recorder.closeRequested()) Players.info(player, "No trace is being recorded.");
+        else Players.info(player, "Recording trace '[cyan]@[]' (@ KB).", recorder.file.getFileName(), 
+                          recorder.written() / 1024);
+        
+      } else if (args[0].equals("start")) {
+        if (recorder != null) {
+          // The previous recorder can still be waiting to be closed by the manager
+          if (recorder.closeRequested()) Players.warn(player, "The previous trace is still being saved, try again.");
+          else Players.warn(player, "A trace is already being recorded.");
+          return;
+        }
+        
+        Path file = Vars.modDirectory.child("player-follow").child("traces")
+                                     .child("trace-" + Time.millis() + ".bin").file().toPath();
+        try { 
+          manager.recorder = new FollowRecorder<>(manager, file);
+          Players.ok(player, "Recording trace '[cyan]@[]'.", file.getFileName()); 
+        } catch (IOException e) {
+          Log.err("[PlayerFollow] Failed to create the trace '" + file + "'", e);
+          Players.err(player, "Failed to create the trace, see the server logs.");
+        }
+        
+      } else if (args[0].equals("stop")) {
+        if (recorder == null || recorder.closeRequested()) {
+          Players.warn(player, "No trace is being recorded.");
+          return;
+        }
+        
+        recorder.requestClose();
+        Players.ok(player, "Trace '[cyan]@[]' saved.", recorder.file.getFileName()); 
+        
+      } else Players.err(player, "Argument must be 'start' or 'stop'.");
+    });
+    
+    handler.<Player>register("follow-limits", "[budget|followers|follows] [value]", 
+                             "Get/Set the limits of follows, and show their projected cost.", 
+    (args, player) -> {
+      // Only admins can do that
+      if (!player.admin) {
+        Players.errCommandUseDenied(player);
+        return;
+      }
+      
+      Admission<Player> admission = manager.admission;
+      if (args.length == 0) {
+        admission.update();
+        StringBuilder message = new StringBuilder();
+        message.append(Strings.format("Projected cost: [cyan]@[] / @ ms per update (@).\n", 
+                                      Strings.fixed(admission.projected(), 3), Strings.fixed(admission.budget, 2), 
+                                      admission.enabled ? "[green]enabled[]" : "[scarlet]disabled[]"));
+        message.append(Strings.format("Max followers per target: @, max follows: @.\n", 
+                                      admission.maxFollowers <= 0 ? "none" : admission.maxFollowers, 
+                                      admission.maxFollows <= 0 ? "none" : admission.maxFollows));
+        message.append("Estimated costs, in us per update:\n");
+        FollowMode.each(m -> message.append(Strings.format("  - [cyan]@[]: @ + @ x followers^@ (@)\n", m.name, 
+                            Strings.fixed(m.fixedCost, 2), Strings.fixed(m.followerCost, 2), 
+                            Strings.fixed(m.costExponent, 2), 
+                            !FollowMode.calibrate ? "configured" : 
+                            m.samples() >= FollowMode.calibrationSamples ? "fitted to " + m.samples() + " updates" 
+                                                                        : "not calibrated yet")));
+        player.sendMessage(message.toString());
+        return;
+      } else if (args.length == 1) {
+        Players.err(player, "Missing value.");
+        return;
+      }
+      
+      float value = Strings.parseFloat(args[1], -1);
+      if (value < 0) {
+        Players.err(player, "Value must be a positive or zero number, zero meaning no limit.");
+        return;
+      }
+      
+      switch (args[0]) {
+        case "budget":
+          admission.budget = value;
+          admission.enabled = value > 0;
+          Core.settings.put("player-follow-admission-budget", value);
+          Core.settings.put("player-follow-admission", admission.enabled);
+          break;
+        case "followers":
+          admission.maxFollowers = (int)value;
+          Core.settings.put("player-follow-max-followers", admission.maxFollowers);
+          break;
+        case "follows":
+          admission.maxFollows = (int)value;
+          Core.settings.put("player-follow-max-follows", admission.maxFollows);
+          break;
+        default:
+          Players.err(player, "First argument must be 'budget', 'followers' or 'follows'.");
+          return;
+      }
+      Players.ok(player, "Limit '[cyan]@[]' set to [cyan]@[].", args[0], args[1]);
+    });
+    
+    handler.<Player>register("follow-events", "[count] [players|units]", "Show the recent events of follows.", 
+    (args, player) -> {
+      // Only admins can do that
+      if (!player.admin) {
+        Players.errCommandUseDenied(player);
+        return;
+      }
+      
+      int count = args.length > 0 ? Strings.parseInt(args[0], -1) : 15;
+      if (count <= 0) {
+        Players.err(player, "Count must be a positive number.");
+        return;
+      } else if (args.length > 1 && !args[1].equals("players") && !args[1].equals("units")) {
+        Players.err(player, "Second argument must be 'players' or 'units'.");
+        return;
+      }
+      
+      FollowManager<?> target = args.length > 1 && args[1].equals("units") ? UnitFollowManager.instance() : manager;
+      StringBuilder message = new StringBuilder();
+      // Also logged, as the chat is limited
+      target.dumpEvents(count, line -> {
+        Log.info("[PlayerFollow] " + line);
+        message.append("[lightgray]").append(line).append("[]\n");
+      });
+      
+      if (message.length() == 0) Players.info(player, "No events recorded.");
+      else player.sendMessage(message.toString());
+    });
+    
+    handler.<Player>register("follow-load", "<start|stop|status> [count] [churn/s] [mode|mixed] [player|random...]", 
+                             "Stress test follows with synthetic followers.", 
+    (args, player) -> {
+      // Only admins can do that
+      if (!player.admin) {
+        Players.errCommandUseDenied(player);
+        return;
+      }
+      
+      if (args[0].equals("status")) {
+        if (LoadGenerator.running()) player.sendMessage(LoadGenerator.report());
+        else Players.info(player, "No synthetic load is running.");
+        
+      } else if (args[0].equals("stop")) {
+        String report = LoadGenerator.stop();
+        if (report == null) Players.warn(player, "No synthetic load is running.");
+        else {
+          Log.info("[PlayerFollow] " + report);
+          player.sendMessage(report);
+        }
+        
+      } else if (args[0].equals("start")) {
+        int count = args.length > 1 ? Strings.parseInt(args[1], -1) : 100;
+        float churn = args.length > 2 ? Strings.parseFloat(args[2], -1) : 0;
+        if (count <= 0 || churn < 0) {
+          Players.err(player, "Count must be a positive number, and churn a positive or zero number.");
+          return;
+        }
+        
+        FollowMode<Unit> mode = null;
+        if (args.length > 3 && !args[3].equals("mixed") && (mode = FollowMode.of(args[3])) == null) {
+          Players.err(player, "Follow mode '[cyan]@[scarlet]' not found.", args[3]);
+          return;
+        }
+        
+        Player target = null;
+        if (args.length > 4 && !args[4].equals("random")) {
+          Players.SearchResult t = Players.find(args[4]);
+          if (!t.found) {
+            Players.errPlayerNotFound(player);
+            return;
+          }
+          target = t.player;
+        }
+        
+        LoadGenerator.start(count, target, mode, churn);
+        Players.ok(player, "Spawning @ units.", Math.min(count, LoadGenerator.maxUnits));
+        
+      } else Players.err(player, "Argument must be 'start', 'stop' or 'status'.");
+    });
   }
 }
@@ -0,0 +1,197 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow;
+
+import arc.Events;
+import arc.struct.IntMap;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+import arc.util.Timer;
+
+import mindustry.game.EventType;
+import mindustry.gen.Groups;
+import mindustry.gen.Player;
+
+
+/** 
+ * Index of online players, to avoid normalizing and sorting every names each time a player is searched. <br>
+ * Names are stored in a prefix tree, with a space at end, and UUIDs in a map. 
+ * IDs lookups are already indexed by {@link Groups#player}.
+ */
+public class PlayerIndex {
+  /** Seconds between checks of renamed players, because there is no event for that. */
+  public static float renameCheckInterval = 1f;
+  
+  private static final Node<Player> root = new Node<>();
+  private static final ObjectMap<Player, Entry> entries = new ObjectMap<>();
+  private static final ObjectMap<String, Player> uuids = new ObjectMap<>();
+  private static boolean initialized;
+  
+  public static void init() {
+    if (initialized) return;
+    
+    Events.on(EventType.PlayerJoin.class, e -> add(e.player));
+    Events.on(EventType.PlayerLeave.class, e -> remove(e.player));
+    Timer.schedule(PlayerIndex::checkRenamed, renameCheckInterval, renameCheckInterval);
+    // In case of the plugin is loaded while players are already online
+    Groups.player.each(PlayerIndex::add);
+    
+    initialized = true;
+  }
+  
+  /** Adds or re-indexes a player. */
+  public static void add(Player player) {
+    if (player == null) return;
+    remove(player);
+    
+    Entry entry = new Entry(player);
+    entries.put(player, entry);
+    uuids.put(player.uuid(), player);
+    root.insert(entry.strippedName, 0, player);
+    if (entry.strippedInfoName != null) root.insert(entry.strippedInfoName, 0, player);
+  }
+  
+  /** Removes a player from the index. */
+  public static void remove(Player player) {
+    if (player == null) return;
+    Entry entry = entries.remove(player);
+    if (entry == null) return;
+    
+    uuids.remove(entry.uuid);
+    root.remove(entry.strippedName, 0, player);
+    if (entry.strippedInfoName != null) root.remove(entry.strippedInfoName, 0, player);
+  }
+  
+  /** 
+   * Must be called if the name of a player has been changed, to not wait the next check. 
+   * Does nothing if the player is not indexed or was not renamed.
+   */
+  public static void update(Player player) {
+    Entry entry = entries.get(player);
+    if (entry != null && entry.renamed()) add(player);
+  }
+  
+  /** Re-indexes players whose name has been changed. Only references are compared, so this is cheap. */
+  public static void checkRenamed() {
+    Groups.player.each(p -> {
+      Entry entry = entries.get(p);
+      if (entry == null || entry.renamed()) add(p);
+    });
+  }
+  
+  /** 
+   * Finds the player with the longest name matching the beginning of {@code args}. <br>
+   * {@code args} must be normalized and a space must be added at end.
+   * @return the search result, or {@code null} if not found.
+   */
+  public static Players.SearchResult findByName(String args) {
+    Node<Player> node = root.longest(args);
+    return node == null ? null : new Players.SearchResult(node.values.first(), args.substring(node.depth));
+  }
+  
+  /** @return the player with this {@code uuid}, or {@code null} if not found. */
+  public static Player findByUUID(String uuid) {
+    return uuids.get(uuid);
+  }
+  
+  
+  static class Entry {
+    final Player player;
+    final String name, infoName, uuid;
+    /** A space is added at end of {@link #strippedName} and {@link #strippedInfoName} to helps the comparison. */
+    final String strippedName, strippedInfoName;
+    
+    Entry(Player player) {
+      this.player = player;
+      this.name = player.name;
+      this.infoName = player.isLocal() ? null : player.getInfo().lastName;
+      this.uuid = player.uuid();
+      this.strippedName = Players.normalizeName(name) + " ";
+      this.strippedInfoName = infoName == null ? null : Players.normalizeName(infoName) + " ";
+    }
+    
+    boolean renamed() {
+      return player.name != name || (infoName != null && player.getInfo().lastName != infoName);
+    }
+  }
+  
+  
+  /** Prefix tree node, generic so that it can be benchmarked without players. */
+  static class Node<V> {
+    IntMap<Node<V>> children;
+    /** Values whose key ends at this node. */
+    Seq<V> values;
+    /** Length of the keys ending at this node. */
+    int depth;
+    
+    void insert(String key, int index, V value) {
+      if (index == key.length()) {
+        if (values == null) values = new Seq<>(1);
+        values.addUnique(value);
+        return;
+      }
+      
+      if (children == null) children = new IntMap<>(4);
+      Node<V> child = children.get(key.charAt(index));
+      if (child == null) {
+        children.put(key.charAt(index), child = new Node<>());
+        child.depth = index+1;
+      }
+      child.insert(key, index+1, value);
+    }
+    
+    /** @return whether this node is now empty and can be removed. */
+    boolean remove(String key, int index, V value) {
+      if (index == key.length()) {
+        if (values != null) {
+          values.remove(value, true);
+          if (values.isEmpty()) values = null;
+        }
+        
+      } else if (children != null) {
+        Node<V> child = children.get(key.charAt(index));
+        if (child != null && child.remove(key, index+1, value)) {
+          children.remove(key.charAt(index));
+          if (children.isEmpty()) children = null;
+        }
+      }
+      
+      return values == null && children == null;
+    }
+    
+    /** @return the node of the longest key matching the beginning of {@code args}, or {@code null} if none. */
+    Node<V> longest(String args) {
+      Node<V> node = this, found = null;
+      for (int i=0, n=args.length(); i<n; i++) {
+        node = node.children == null ? null : node.children.get(args.charAt(i));
+        if (node == null) break;
+        if (node.values != null) found = node;
+      }
+      return found;
+    }
+  }
+}
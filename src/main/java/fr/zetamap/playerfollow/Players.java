@@ -28,8 +28,6 @@ package fr.zetamap.playerfollow;
 
 import arc.struct.Seq;
 import arc.util.Strings;
-import arc.util.pooling.Pool;
-import arc.util.pooling.Pools;
 
 import mindustry.gen.Groups;
 import mindustry.gen.Player;
@@ -45,24 +43,27 @@ public class Players {
   public static void warn(Player player, String fmt, Object... msg) { player.sendMessage("[orange]" + Strings.format(fmt, msg)); }
   public static void ok(Player player, String fmt, Object... msg) { player.sendMessage("[green]" + Strings.format(fmt, msg)); }
   
+  // Same as above, but the message is formatted only once for all players.
+  public static void errAll(Seq<Player> players, String fmt, Object... msg) { broadcast(players, "[scarlet]" + Strings.format(fmt, msg)); }
+  public static void infoAll(Seq<Player> players, String fmt, Object... msg) { broadcast(players, Strings.format(fmt, msg)); }
+  public static void warnAll(Seq<Player> players, String fmt, Object... msg) { broadcast(players, "[orange]" + Strings.format(fmt, msg)); }
+  public static void okAll(Seq<Player> players, String fmt, Object... msg) { broadcast(players, "[green]" + Strings.format(fmt, msg)); }
+  
+  /** Sends an already built message, that can be multi-line, to all {@code players}. */
+  public static void broadcast(Seq<Player> players, String message) {
+    if (message == null || message.isEmpty()) return;
+    players.each(p -> p.sendMessage(message));
+  }
+  
   public static SearchResult findByName(String[] args) { return findByName(String.join(" ", args)); }
   /** 
-   * Try to find a player by name. (sorted by most larger name first to avoid non-targatable players) <br>
+   * Try to find a player by name. (the longest matching name is chosen to avoid non-targatable players) <br>
    * Non-targatable players are players that includes a command argument or informations of another player
    * at end of his nickname, to not be targeted by commands.
    */
   public static SearchResult findByName(String arg) {
-    Seq<SortElement> temp = new Seq<>(Groups.player.size());
-    Groups.player.each(p -> temp.add(Pools.obtain(SortElement.class, SortElement::new).set(p)));
-    temp.sort(p -> p.strippedNameSize);
-
-    // Process in reverse order, excluding the possibility of a player's name beginning with another player's name
     String args = normalizeName(arg)+" ";
-    SearchResult result = null;
-    for (int i=temp.size-1; i>=0; i--) {
-      if ((result = temp.get(i).find(args)) != null) break;
-    }
-    Pools.freeAll(temp, true);
+    SearchResult result = PlayerIndex.findByName(args);
     return result != null ? result : new SearchResult(null, args);
   }
   
@@ -81,7 +82,7 @@ public class Players {
   /** Try to find a player by UUID */
   public static SearchResult findByUUID(String arg) {
     String args = arg+" ";
-    Player target = Groups.player.find(p -> args.startsWith(p.uuid()+" "));
+    Player target = PlayerIndex.findByUUID(args.substring(0, args.indexOf(' ')));
     return new SearchResult(target, target == null ? args : args.substring(target.uuid().length()));
   }
   
@@ -118,40 +119,4 @@ public class Players {
       this.found = this.player != null;
     }
   }
-  
-  /** Class that helps comparing players by nickname without normalize them multiple times */
-  static class SortElement implements Pool.Poolable {
-    public Player player;
-    public String strippedName, strippedInfoName;
-    public int strippedNameSize = -1, strippedInfoNameSize = -1;
-    
-    /** A space will be added at end of @{@link #strippedName} and {@link #strippedInfoName} to helps the comparison. */
-    public SortElement set(Player player) {
-      this.player = player;
-      this.strippedName = normalizeName(player.name) + " ";
-      this.strippedInfoName = player.isLocal() ? null : normalizeName(player.getInfo().lastName) + " ";
-      this.strippedNameSize = strippedName.length();
-      this.strippedInfoNameSize = player.isLocal() ? -1 : strippedInfoName.length();
-      return this;
-    }
-    
-    /** A space must be added at end of {@code args}. */
-    public SearchResult find(String args) {
-      // First search using the player name, and after, 
-      // using the player info name (in case of the server changed his name)
-      if (args.startsWith(strippedName)) 
-        return new SearchResult(player, args.substring(strippedNameSize));
-      else if (strippedInfoName != null && args.startsWith(strippedInfoName)) 
-        return new SearchResult(player, args.substring(strippedInfoNameSize));
-      else 
-        return null;
-    }
-
-    @Override
-    public void reset() {
-      player = null;
-      strippedName = strippedInfoName = null;
-      strippedNameSize = strippedInfoNameSize = -1;
-    }
-  }
-}
\ No newline at end of file
+}
@@ -26,26 +26,95 @@
 
 package fr.zetamap.playerfollow.api;
 
+import java.nio.ByteBuffer;
+
 import arc.func.Cons2;
+import arc.func.Prov;
 import arc.math.geom.Position;
 import arc.math.geom.Vec2;
 import arc.struct.DelayedRemovalSeq;
+import arc.struct.ObjectSet;
 import arc.struct.Seq;
+import arc.util.pooling.Pool;
+
+import mindustry.Vars;
 
 
-public abstract class AbstractFollow<T extends Position> implements Follow<T> {
+public abstract class AbstractFollow<T extends Position> implements Follow<T>, Pool.Poolable {
+  public static float SCALE = Vars.tilesize;
+  /** 
+   * Updates skipped at most in a row for idle follows, before a keyframe is sent to correct client drift. 
+   * {@code 0} means to never skip updates.
+   */
+  public static int keyframeInterval = 60;
+  
   /** Because {@link #update(Cons2)} can be called in another thread, {@link #remove(T)} will be delayed. */
   public final DelayedRemovalSeq<T> followers = new DelayedRemovalSeq<>();
-  /** The followed target */
-  public final T followed;
+  /** The followed target. Only changed when the follow is reused by its {@link FollowMode}. */
+  public T followed;
+  /** Gives access to the state of {@link #followed} and followers. */
+  public Accessor<T> accessor;
   /** Aka {@link #followed} position, updated each times {@link #update()} is called. */
   public final Vec2 leader = new Vec2();
   /** This is needed to avoid removing the follow while creating one and adding a follower. */
   protected boolean canRemove;
+  /** 
+   * Set by the {@link Degradation} of the manager under load. 
+   * Modes should then only adapt their layout to membership changes, and not check the size of followers.
+   */
+  public boolean lazyChecks;
+  /** Recent events of the manager, set when the follow is added to it. */
+  public FollowEvents events;
+  /** Incremented each time followers are changed. */
+  protected int changes;
+  /** 
+   * Set when followers are changed. The layout is then adapted once for all changes, 
+   * at the start of the next update, see {@link #layout()}.
+   */
+  protected boolean layoutPending;
+  /** Layout epoch, incremented each time the layout is {@link #recomputed()}. */
+  protected int epoch;
+  /** Incremented each time the followed or a follower changed of state, see {@link #invalidate()}. */
+  private int states;
+  /** State of the last computed update, to skip the next ones while it doesn't change. */
+  private float idleX, idleY, idleRotation;
+  private int idleChanges = -1, idleEpoch, idleConfig, idleStates, idleFor;
+  /** Whether the last update has been skipped by {@link #idle()}. */
+  private boolean idling;
+  /** Followers that could not be updated at the last update. */
+  private int suppressed;
   protected final Vec2 target = new Vec2();
+  /** Buffers of {@link #addAll(Seq)}, to deduplicate followers. */
+  private final ObjectSet<T> present = new ObjectSet<>();
+  private final Seq<T> added = new Seq<>();
   
-  public AbstractFollow(T target) {
+  public AbstractFollow(T target, Accessor<T> accessor) {
     followed = target;
+    this.accessor = accessor;
+  }
+  
+  /** Reinitializes a pooled follow for a new {@code target}. */
+  public AbstractFollow<T> set(T target, Accessor<T> accessor) {
+    followed = target;
+    this.accessor = accessor;
+    position(target, leader);
+    canRemove = false;
+    setImpl();
+    return this;
+  }
+  
+  @Override
+  public void reset() {
+    clear();
+    layout(); //free the layout while pooled
+    followed = null;
+    canRemove = false;
+    lazyChecks = false;
+    events = null;
+    suppressed = 0;
+    idleChanges = -1;
+    idling = false;
+    leader.setZero();
   }
   
   @Override
@@ -61,20 +130,54 @@ public abstract class AbstractFollow<T extends Position> implements Follow<T> {
   @Override
   public boolean add(T follower) {
     if (!followers.addUnique(follower)) return false;
+    changed();
+    event(FollowEvents.Type.FOLLOWER_ADDED, follower, 1);
     addImpl(follower);
     return canRemove = true;
   }
   
+  /** Adds {@code followers} not already in this follow, in one batch. Duplicates are found by hashing. */
   @Override
   public void addAll(Seq<T> followers) {
-    followers.removeAll(this.followers); //avoid duplication
+    if (followers.isEmpty()) return;
+    present.addAll(this.followers);
+    for (int i=0; i<followers.size; i++) {
+      T follower = followers.get(i);
+      if (present.add(follower)) added.add(follower);
+    }
+    
+    try { addAllUnchecked(added); }
+    finally {
+      present.clear(8); //free memory
+      added.clear();
+    }
+  }
+  
+  /** Moves every followers of {@code from} to this follow, and clears it. */
+  @Override
+  public void takeAll(Follow<T> from) {
+    if (from == this) return;
+    // Nothing to deduplicate when this follow is empty, which is the case when changing the mode
+    if (followers.isEmpty()) addAllUnchecked(from.followers());
+    else addAll(from.followers());
+    from.clear();
+  }
+  
+  /** Adds {@code followers} without checking for duplicates. */
+  protected void addAllUnchecked(Seq<T> followers) {
+    if (followers.isEmpty()) return;
     this.followers.addAll(followers);
+    changed();
+    event(FollowEvents.Type.FOLLOWER_ADDED, followers.size == 1 ? followers.first() : null, followers.size);
     addAllImpl(followers);
+    canRemove = true;
   }
 
   @Override
   public boolean remove(T follower) {
     if (!followers.remove(follower)) return false;
+    changed();
+    event(FollowEvents.Type.FOLLOWER_REMOVED, follower, 1);
     removeImpl(follower);
     return canRemove = true;
   }
@@ -87,48 +190,210 @@ public abstract class AbstractFollow<T extends Position> implements Follow<T> {
   @Override
   public void clear() {
     if (followers.isEmpty()) return;
+    event(FollowEvents.Type.FOLLOWER_REMOVED, null, followers.size);
     followers.clear();
+    changed();
     clearImpl();
   }
   
+  /** Marks followers as changed, and the layout to be adapted. */
+  protected void changed() {
+    changes++;
+    layoutPending = true;
+  }
+  
+  /** 
+   * Adapts the layout to the membership changes since the last time, if any. <br>
+   * This is done at the start of each update, so many changes in a tick only cost one layout. 
+   * Must also be called before using the layout outside of an update.
+   */
+  public void layout() {
+    if (!layoutPending) return;
+    layoutPending = false;
+    long start = System.nanoTime();
+    layoutImpl();
+    event(FollowEvents.Type.LAYOUT, null, System.nanoTime() - start);
+  }
+  
+  /** 
+   * Marks the followed or a follower as changed of state, e.g. resized, dead or respawned, 
+   * so the next update is not skipped by {@link #idle()}. <br>
+   * Called by the {@link EntityBuffer} of the manager when capturing entities. 
+   * Without it, such changes are only applied by the next keyframe.
+   */
+  public void invalidate() {
+    states++;
+  }
+  
+  @Override
+  public boolean idling() {
+    return idling;
+  }
+  
+  /** Records an event of this follow, if added to a manager. */
+  protected void event(FollowEvents.Type type, Object detail, long value) {
+    if (events != null) events.record(type, followed, detail, value);
+  }
+  
+  /** Records the number of followers that cannot be updated, only when it changes. */
+  protected void suppressed(int count) {
+    if (count == suppressed) return;
+    suppressed = count;
+    event(FollowEvents.Type.SUPPRESSED, null, count);
+  }
+  
   /** @return {@code true} if there is no followers, excluding the case of an initial empty follow, else {@code false}. */
   @Override
   public boolean shouldRemove() {
     return canRemove && followers.isEmpty();
   }
 
+  @Override
+  public int changes() {
+    return changes;
+  }
+
   /** Computes and updates {@link #followers}'s position. */
   @Override
   public void update(Cons2<T, Vec2> notifer) {
-    leader.set(followed);
-    if (cannotUpdate(followed)) return;
+    compute((follower, target) -> {
+      setPosition(follower, target);
+      if (notifer != null) notifer.get(follower, target);
+    });
+  }
+  
+  /** 
+   * Computes {@link #followers}'s position, without updating them. <br>
+   * The {@code leader} position can be different than the {@link #followed} one, 
+   * e.g. when the followed is also a follower, and its new position is not applied yet.
+   */
+  @Override
+  public void compute(Position leader, Cons2<T, Vec2> out) {
+    this.leader.set(leader);
+    idling = false;
+    if (cannotUpdate(followed)) {
+      suppressed(followers.size);
+      return;
+    } else if (idle()) return;
     followers.begin();
     try {
+      layout();
       if (followers.isEmpty()) return;
       preUpdate();
+      if (split(out)) return;
       
+      int skipped = 0;
       for (int i=0; i<followers.size; i++) {
         T follower = followers.get(i);
-        if (cannotUpdate(follower)) continue;
+        if (cannotUpdate(follower)) {
+          skipped++;
+          continue;
+        }
   
-        update(target.set(leader), i, follower);
-        setPosition(follower, target);
-        if (notifer != null) notifer.get(follower, target);
+        update(target.set(this.leader), i, follower);
+        out.get(follower, target);
       }  
+      suppressed(skipped);
     } finally {
       followers.end();
+      // Taken after computing, as the layout can be recomputed while updating
+      idleEpoch = epoch;
+    }
+  }
+  
+  /** 
+   * Checks whether the leader, the followers and the layout are unchanged since the last computed update, 
+   * so the positions would be the same. At most {@link #keyframeInterval} updates are skipped in a row. <br>
+   * Followers are not checked one by one, their changes are notified by {@link #invalidate()}.
+   * 
+   * @return whether this update can be skipped.
+   */
+  protected boolean idle() {
+    if (keyframeInterval <= 0 || !canIdle()) {
+      idleChanges = -1;
+      return false;
     }
+    
+    float rotation = rotation(followed);
+    int config = FollowConfig.latest();
+    
+    if (idleChanges == changes && idleEpoch == epoch && idleConfig == config && idleStates == states && 
+        idleX == leader.x && idleY == leader.y && idleRotation == rotation && ++idleFor < keyframeInterval) 
+      return idling = true;
+    
+    idleChanges = changes;
+    idleConfig = config;
+    idleStates = states;
+    idleX = leader.x;
+    idleY = leader.y;
+    idleRotation = rotation;
+    idleFor = 0;
+    return false;
+  }
+  
+  /** 
+   * Overridden by {@link SplittableFollow}, to place large follows across threads. 
+   * @return whether followers have been placed.
+   */
+  boolean split(Cons2<T, Vec2> out) {
+    return false;
+  }
+  
+  @Override
+  public void apply(T follower, Vec2 position) {
+    setPosition(follower, position);
+  }
+  
+  /** 
+   * Creates a pool owned by the follow. <br>
+   * Follows can be computed by different threads, so the shared {@link arc.util.pooling.Pools} must not be used.
+   */
+  protected static <P> Pool<P> pool(Prov<P> supplier) {
+    return new Pool<P>() {
+      @Override
+      protected P newObject() {
+        return supplier.get();
+      }
+    };
   }
   
-  // Can be overridden to do things when adding, removing or clearing followers.
+  /** 
+   * Must be called by modes each time their layout is recomputed, 
+   * for the {@link FollowMode#recomputes} counter and the layout {@link #epoch}.
+   */
+  protected void recomputed() {
+    epoch++;
+    FollowMode<T> mode = FollowMode.of(this);
+    if (mode != null) mode.recomputes.increment();
+  }
+  
+  /** Can be overridden to write the mode-specific state, to be restored with {@link #readState(ByteBuffer)}. */
+  public void writeState(ByteBuffer buffer) {}
+  
+  /** 
+   * Can be overridden to read the state written by {@link #writeState(ByteBuffer)}. Followers are already added. <br>
+   * Some followers can be missing, so the state must be ignored if not consistent.
+   */
+  public void readState(ByteBuffer buffer) {}
+  
+  // Can be overridden to do things when adding, removing or clearing followers, or when the follow is reused.
   protected void addImpl(T follower) {}
   protected void addAllImpl(Seq<T> followers) {}
   protected void removeImpl(T follower) {}
   protected void clearImpl() {}
+  protected void setImpl() {}
+  /** Can be overridden to adapt the layout, once for all membership changes since the last update. */
+  protected void layoutImpl() {}
   
   /** Can be overridden to do things before updating followers positions. */
   protected void preUpdate() {}
 
+  /** 
+   * Can be overridden if the positions only depend on the leader, the followers and the layout, 
+   * so updates can be skipped while they don't change.
+   */
+  protected boolean canIdle() { return false; }
+  
   /**
    * @param out the player's new position, starting from the {@link #leader} position.
    * @param index the {@link #followers} index.
@@ -137,8 +402,28 @@ public abstract class AbstractFollow<T extends Position> implements Follow<T> {
   protected abstract void update(Vec2 out, int index, T follower);
   
   /** @return whether the {@code follower} or the {@link #followed} cannot be updated. */
-  protected abstract boolean cannotUpdate(T follower);
+  protected boolean cannotUpdate(T follower) {
+    return accessor.dead(follower);
+  }
   
   /** Set the position of the {@code follower}. */
-  protected abstract void setPosition(T follower, Vec2 target);
+  protected void setPosition(T follower, Vec2 target) {
+    accessor.setPosition(follower, target);
+  }
+  
+  /** Gets the position of an entity. */
+  protected Vec2 position(T entity, Vec2 out) {
+    return out.set(accessor.x(entity), accessor.y(entity));
+  }
+  
+  /** Gets the rotation of an entity, in degrees. */
+  protected float rotation(T entity) {
+    return accessor.rotation(entity);
+  }
+  
+  /** Gets the size of an entity */
+  @Override
+  public float hitSize(T entity) {
+    return cannotUpdate(entity) ? 1f : Math.max(1f, accessor.hitSize(entity) / 2f);
+  }
 }
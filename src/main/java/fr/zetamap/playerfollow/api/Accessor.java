@@ -0,0 +1,60 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+
+
+/** 
+ * Gives access to the state of entities, so follow modes don't depend on a specific entity type. <br>
+ * Each {@link FollowManager} provides the accessor of its entities.
+ */
+public interface Accessor<T extends Position> {
+  /** @return the position of the entity. */
+  default float x(T entity) { return entity.getX(); }
+  default float y(T entity) { return entity.getY(); }
+  
+  /** @return whether the entity cannot move or be followed, e.g. because it is dead. */
+  boolean dead(T entity);
+  
+  /** @return the rotation of the entity, in degrees. */
+  float rotation(T entity);
+  
+  /** @return the hit size of the entity, in world units. */
+  float hitSize(T entity);
+  
+  /** @return whether the entity walks on the ground, and so cannot go through solid tiles. */
+  default boolean grounded(T entity) { return false; }
+  
+  /** @return the id of the entity, for other plugins, or {@code -1} if none. */
+  default int id(T entity) { return -1; }
+  
+  /** Moves the entity to the {@code position}. */
+  void setPosition(T entity, Vec2 position);
+}
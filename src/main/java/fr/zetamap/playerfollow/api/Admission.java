@@ -0,0 +1,116 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+
+
+/** 
+ * Admission control of the joins of a {@link FollowManager}, using the cost model of {@link FollowMode modes}. <br>
+ * A join is refused when the target has too many followers, when there are too many follows, 
+ * or when the projected cost of all follows would exceed the {@link #budget}. In the last case, the follow is redirected to the {@link #cheapMode} 
+ * if that keeps the projected cost within the budget.
+ */
+public class Admission<T extends Position> {
+  public boolean enabled = true;
+  /** Projected cost of all follows that must not be exceeded by joins, in milliseconds per update. */
+  public float budget = 4f;
+  /** Maximum followers per target, and maximum follows, {@code 0} for no limit. */
+  public int maxFollowers = 0, maxFollows = 0;
+  /** Mode to redirect joins to, when the budget is exceeded. {@code null} means the {@code joint} mode. */
+  public FollowMode<T> cheapMode;
+  
+  protected final FollowManager<T> manager;
+  /** Projected cost of all follows, in microseconds per update, updated at each sync point and join. */
+  protected volatile float projected;
+  
+  public Admission(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  /** @return the projected cost of all follows, in milliseconds per update. */
+  public float projected() {
+    return projected / 1000f;
+  }
+  
+  /** Computes the projected cost of all follows. Must be called on the main thread. */
+  public void update() {
+    float total = 0;
+    for (Follow<T> follow : manager.all.values()) total += cost(follow);
+    projected = total;
+  }
+  
+  /** 
+   * Checks whether {@code added} followers can join the follow of {@code target}, 
+   * or a new follow of the {@code mode} if none. Must be called on the main thread.
+   */
+  public Result check(T target, FollowMode<T> mode, int added) {
+    if (!enabled) return Result.ACCEPTED;
+    Follow<T> follow = manager.get(target);
+    int followers = follow == null ? 0 : follow.followers().size;
+    if (follow != null) mode = FollowMode.of(follow);
+    if (maxFollowers > 0 && followers + added > maxFollowers) return Result.FULL;
+    if (maxFollows > 0 && follow == null && manager.all.size >= maxFollows) return Result.FULL;
+    if (mode == null) return Result.ACCEPTED;
+    
+    update();
+    // Projected cost without the current follow of the target
+    float limit = budget * 1000f, others = projected - (follow == null ? 0 : cost(follow));
+    if (others + mode.cost(followers + added) <= limit) return Result.ACCEPTED;
+    
+    FollowMode<T> cheap = cheapMode();
+    if (cheap != null && cheap != mode && others + cheap.cost(followers + added) <= limit) return Result.REDIRECTED;
+    return Result.OVERLOADED;
+  }
+  
+  /** @return the mode to use for redirected joins. */
+  public FollowMode<T> cheapMode() {
+    return cheapMode != null ? cheapMode : FollowMode.of("joint");
+  }
+  
+  /** @return the estimated cost of the {@code follow}, in microseconds per update. */
+  public float cost(Follow<T> follow) {
+    FollowMode<T> mode = FollowMode.of(follow);
+    return mode == null ? 0 : mode.cost(follow.followers().size);
+  }
+  
+  
+  public enum Result {
+    ACCEPTED, 
+    /** Accepted, but the follow must be switched to the {@link Admission#cheapMode()}. */
+    REDIRECTED, 
+    /** Refused, the target has too many followers, or there are too many follows. */
+    FULL, 
+    /** Refused, even the cheap mode would exceed the budget. */
+    OVERLOADED;
+    
+    public boolean admitted() {
+      return this == ACCEPTED || this == REDIRECTED;
+    }
+  }
+}
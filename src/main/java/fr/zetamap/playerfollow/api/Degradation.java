@@ -0,0 +1,179 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+import arc.util.Log;
+
+
+/** 
+ * Adaptive controller degrading the follows of a {@link FollowManager} when updates exceed their time budget. <br>
+ * The average update cost is checked at each sync point, and levels are stepped one at a time,
+ * only after the cost stayed above {@link #upper} or below {@link #lower} during {@link #holdUpdates} updates. 
+ * Levels are cumulative:
+ * <ol>
+ *   <li>{@link #LAZY_CHECKS}: follows don't check the size of followers, layouts are only adapted to membership changes.
+ *   <li>{@link #LOWER_FREQUENCY}: follows of at least {@link #largeGroup} followers are updated less often.
+ *   <li>{@link #CHEAP_MODE}: follows of at least {@link #hugeGroup} followers are switched to the {@link #cheapMode},
+ *       and switched back when the level drops.
+ * </ol>
+ */
+public class Degradation<T extends Position> {
+  public static final int NORMAL = 0, LAZY_CHECKS = 1, LOWER_FREQUENCY = 2, CHEAP_MODE = 3;
+  
+  public boolean enabled = true;
+  /** Time budget of an update cycle, in milliseconds. */
+  public float budget = 2f;
+  /** Fractions of the budget above which the level is increased, and below which it is decreased. */
+  public float upper = 1f, lower = 0.5f;
+  /** Updates that must stay above or below the limits before changing the level. */
+  public int holdUpdates = 30;
+  /** Weight of the last cycles in the average cost. */
+  public float smoothing = 0.2f;
+  /** Followers count of large and huge groups. */
+  public int largeGroup = 32, hugeGroup = 128;
+  /** Large groups are updated once every {@code frequencyDivider} updates, at the {@link #LOWER_FREQUENCY} level. */
+  public int frequencyDivider = 2;
+  /** Mode of huge groups, at the {@link #CHEAP_MODE} level. {@code null} means the {@code joint} mode. */
+  public FollowMode<T> cheapMode;
+  
+  protected final FollowManager<T> manager;
+  /** Original mode of the follows switched to the {@link #cheapMode}. */
+  protected final ObjectMap<T, FollowMode<T>> degraded = new ObjectMap<>();
+  protected final Seq<T> temp = new Seq<>();
+  protected volatile int level;
+  protected int over, under, cycle, checks;
+  protected float average;
+  protected long lastUpdates, lastNanos;
+  
+  public Degradation(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  public int level() {
+    return level;
+  }
+  
+  /** Checks the cost of the last updates, and changes the level if needed. Must be called while not updating. */
+  public void check() {
+    long updates = manager.stats.updates.sum(), nanos = manager.stats.updateNanos.sum();
+    // Counters can be reset by JMX tools
+    if (updates < lastUpdates || nanos < lastNanos) lastUpdates = lastNanos = 0;
+    if (updates == lastUpdates) return;
+    
+    float cost = (nanos - lastNanos) / 1e6f / (updates - lastUpdates);
+    int count = (int)(updates - lastUpdates);
+    lastUpdates = updates;
+    lastNanos = nanos;
+    cycle += count;
+    average = average == 0 ? cost : average + (cost - average) * smoothing;
+    // Forget removed follows, from time to time
+    if (++checks % 60 == 0) prune();
+    
+    if (!enabled) {
+      if (level != NORMAL) setLevel(NORMAL);
+      return;
+    }
+    
+    if (average > budget * upper) {
+      under = 0;
+      if ((over += count) >= holdUpdates && level < CHEAP_MODE) setLevel(level + 1);
+    } else if (average < budget * lower) {
+      over = 0;
+      if ((under += count) >= holdUpdates && level > NORMAL) setLevel(level - 1);
+    } else over = under = 0;
+    
+    // Groups can grow after the level is reached
+    if (level >= CHEAP_MODE) degrade();
+  }
+  
+  public void setLevel(int level) {
+    int last = this.level;
+    this.level = level;
+    over = under = 0;
+    if (level > last) Log.warn("[PlayerFollow] Degradation level of @: @ -> @ (average update: @ ms)", 
+                               manager.getClass().getSimpleName(), last, level, average);
+    else Log.debug("[PlayerFollow] Degradation level of @: @ -> @ (average update: @ ms)", 
+                   manager.getClass().getSimpleName(), last, level, average);
+    
+    if ((last >= LAZY_CHECKS) != (level >= LAZY_CHECKS)) manager.all.each((t, f) -> apply(f));
+    if (level < CHEAP_MODE && last >= CHEAP_MODE) restore();
+  }
+  
+  /** Applies the current level to the {@code follow}. */
+  public void apply(Follow<T> follow) {
+    if (follow instanceof AbstractFollow) ((AbstractFollow<T>)follow).lazyChecks = level >= LAZY_CHECKS;
+  }
+  
+  /** @return whether the {@code follow} must be skipped in this update. */
+  public boolean skip(Follow<T> follow, int index) {
+    return level >= LOWER_FREQUENCY && follow.followers().size >= largeGroup && 
+           (cycle + index) % Math.max(1, frequencyDivider) != 0;
+  }
+  
+  /** Switches huge groups to the {@link #cheapMode}. Must be called while not updating. */
+  public void degrade() {
+    FollowMode<T> cheap = cheapMode != null ? cheapMode : FollowMode.of("joint");
+    // Don't fight a migration requested by an admin
+    if (cheap == null || manager.migrating()) return;
+    
+    temp.clear();
+    manager.all.each((t, f) -> {
+      if (f.followers().size >= hugeGroup && FollowMode.of(f) != cheap) temp.add(t);
+    });
+    temp.each(t -> {
+      FollowMode<T> mode = FollowMode.of(manager.get(t));
+      if (mode != null) degraded.put(t, mode);
+      manager.changeMode(t, cheap);
+    });
+  }
+  
+  /** Switches back follows to their original mode. Must be called while not updating. */
+  public void restore() {
+    FollowMode<T> cheap = cheapMode != null ? cheapMode : FollowMode.of("joint");
+    degraded.each((t, mode) -> {
+      Follow<T> f = manager.get(t);
+      // Removed or changed since degraded
+      if (f != null && FollowMode.of(f) == cheap) manager.changeMode(f, mode);
+    });
+    degraded.clear();
+  }
+  
+  /** Forgets the degraded follows that were removed, or changed to another mode since. */
+  protected void prune() {
+    FollowMode<T> cheap = cheapMode != null ? cheapMode : FollowMode.of("joint");
+    temp.clear();
+    degraded.each((t, mode) -> {
+      Follow<T> f = manager.get(t);
+      if (f == null || FollowMode.of(f) != cheap) temp.add(t);
+    });
+    temp.each(degraded::remove);
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.Arrays;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.ObjectIntMap;
+import arc.struct.Seq;
+
+
+/** 
+ * Primitive copy of the state of entities, captured on the main thread at a sync point, 
+ * so follows can be computed in other threads without reading entities while they are mutated. <br>
+ * Entities not captured, e.g. added since the capture, are only read from the {@link #source} on the capturing thread. 
+ * Other threads see them as dead, so they are not placed until the next capture.
+ * Writes are always forwarded, and must be done on the main thread. <br>
+ * The buffer is doubled: the previous capture is kept, to detect the entities that changed between two captures, 
+ * see {@link #changed(Position)}, so idle follows don't have to check their followers. 
+ * Both frames are reused, so capturing does not allocate.
+ */
+public class EntityBuffer<T extends Position> implements Accessor<T> {
+  protected static final byte DEAD = 1, GROUNDED = 2;
+  
+  public final Accessor<T> source;
+  /** The last capture, read by follows, and the previous one. */
+  protected Frame<T> current = new Frame<>(), previous = new Frame<>();
+  /** The thread of the last capture, which can read entities not captured. */
+  protected Thread owner;
+  
+  public EntityBuffer(Accessor<T> source) {
+    this.source = source;
+  }
+  
+  /** Captures the targets and followers of {@code follows}. Must be called on the main thread, while not updating. */
+  public void capture(Seq<Follow<T>> follows) {
+    Frame<T> frame = previous;
+    previous = current;
+    current = frame;
+    frame.clear();
+    owner = Thread.currentThread();
+    
+    for (int i=0; i<follows.size; i++) {
+      Follow<T> follow = follows.get(i);
+      Seq<T> followers = follow.followers();
+      boolean changed = capture(follow.followed());
+      for (int ii=0; ii<followers.size; ii++) changed |= capture(followers.get(ii));
+      // Idle follows are only updated again when notified
+      if (changed && follow instanceof AbstractFollow) ((AbstractFollow<T>)follow).invalidate();
+    }
+  }
+  
+  /** 
+   * Captures the state of the {@code entity}, if not already. 
+   * @return whether it {@link #changed(Position)} since the previous capture.
+   */
+  public boolean capture(T entity) {
+    Frame<T> frame = current;
+    if (frame.indices.containsKey(entity)) return changed(entity);
+    int i = frame.add(entity);
+    boolean dead = source.dead(entity);
+    frame.xs[i] = source.x(entity);
+    frame.ys[i] = source.y(entity);
+    // Other values cannot be read from dead entities
+    frame.rotations[i] = dead ? 0 : source.rotation(entity);
+    frame.sizes[i] = dead ? 0 : source.hitSize(entity);
+    frame.flags[i] = (byte)((dead ? DEAD : 0) | (!dead && source.grounded(entity) ? GROUNDED : 0));
+    return changed(entity);
+  }
+  
+  public int size() {
+    return current.size;
+  }
+  
+  /** 
+   * @return whether the {@code entity} changed of size or died or respawned between the two last captures, 
+   *         or was not captured by both.
+   */
+  public boolean changed(T entity) {
+    int i = current.indices.get(entity, -1), last = previous.indices.get(entity, -1);
+    return i == -1 || last == -1 || current.flags[i] != previous.flags[last] || current.sizes[i] != previous.sizes[last];
+  }
+  
+  /** @return the index of the {@code entity} in the last capture, or {@code -1} if not captured. */
+  protected int index(T entity) {
+    return current.indices.get(entity, -1);
+  }
+  
+  /** @return whether the current thread can read entities not captured. */
+  protected boolean owned() {
+    return Thread.currentThread() == owner || owner == null;
+  }
+  
+  @Override
+  public boolean dead(T entity) {
+    int i = index(entity);
+    if (i == -1) return !owned() || source.dead(entity);
+    return (current.flags[i] & DEAD) != 0;
+  }
+  
+  @Override
+  public float x(T entity) {
+    int i = index(entity);
+    return i != -1 ? current.xs[i] : owned() ? source.x(entity) : 0;
+  }
+  
+  @Override
+  public float y(T entity) {
+    int i = index(entity);
+    return i != -1 ? current.ys[i] : owned() ? source.y(entity) : 0;
+  }
+  
+  @Override
+  public float rotation(T entity) {
+    int i = index(entity);
+    return i != -1 ? current.rotations[i] : owned() ? source.rotation(entity) : 0;
+  }
+  
+  @Override
+  public float hitSize(T entity) {
+    int i = index(entity);
+    return i != -1 ? current.sizes[i] : owned() ? source.hitSize(entity) : 0;
+  }
+  
+  @Override
+  public boolean grounded(T entity) {
+    int i = index(entity);
+    return i != -1 ? (current.flags[i] & GROUNDED) != 0 : owned() && source.grounded(entity);
+  }
+  
+  /** Ids are only read on the main thread, so they are not captured. */
+  @Override
+  public int id(T entity) {
+    return source.id(entity);
+  }
+  
+  @Override
+  public void setPosition(T entity, Vec2 position) {
+    source.setPosition(entity, position);
+  }
+  
+  
+  /** One capture of entities. */
+  protected static class Frame<T> {
+    public final ObjectIntMap<T> indices = new ObjectIntMap<>();
+    public float[] xs = new float[16], ys = new float[16], rotations = new float[16], sizes = new float[16];
+    public byte[] flags = new byte[16];
+    public int size;
+    
+    public void clear() {
+      indices.clear();
+      size = 0;
+    }
+    
+    /** @return the index of the added {@code entity}, its values must then be set. */
+    public int add(T entity) {
+      if (size == xs.length) {
+        int capacity = size * 2;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        rotations = Arrays.copyOf(rotations, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+      }
+      indices.put(entity, size);
+      return size++;
+    }
+  }
+}
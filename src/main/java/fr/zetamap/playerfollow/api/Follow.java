@@ -12,12 +12,28 @@ public interface Follow<T extends Position> {
   
   boolean add(T follower);
   void addAll(Seq<T> followers);
+  /** Moves every followers of {@code from} to this follow, and clears it. */
+  void takeAll(Follow<T> from);
   boolean remove(T follower);
   boolean contains(T follower);
   void clear();
   
   boolean shouldRemove();
+  /** @return a counter incremented each time followers are changed. */
+  int changes();
   
   default void update() { update(null); }
+  /** Computes and applies the followers positions. */
   void update(Cons2<T, Vec2> notifer);
+  /** Computes the followers positions, without applying them. */
+  default void compute(Cons2<T, Vec2> out) { compute(followed(), out); }
+  /** Computes the followers positions, from the specified {@code leader} position, without applying them. */
+  void compute(Position leader, Cons2<T, Vec2> out);
+  /** Applies a position computed by {@link #compute(Cons2)}. */
+  void apply(T follower, Vec2 position);
+  /** @return whether the last computation has been skipped, as the positions would have been the same. */
+  default boolean idling() { return false; }
+  
+  /** Gets the radius of a follower. */
+  float hitSize(T follower);
 }
@@ -0,0 +1,61 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/** 
+ * Parameters of a follow mode, shared by all follows of the mode or owned by a single follow. <br>
+ * Each change gives a new version, taken from a global counter, so follows only have to compare 
+ * the version of their config with the last one they applied, to know whether they must be re-layout. <br>
+ * After changing fields directly, {@link #changed()} must be called.
+ */
+public abstract class FollowConfig {
+  private static final AtomicInteger versions = new AtomicInteger();
+  
+  private volatile int version = versions.incrementAndGet();
+  
+  /** @return the last version given to a config. Changes when any config is changed. */
+  public static int latest() {
+    return versions.get();
+  }
+  
+  /** @return the version of this config. Different configs never have the same version. */
+  public int version() {
+    return version;
+  }
+  
+  /** Must be called after changing a value, to notify follows using this config. */
+  public void changed() {
+    version = versions.incrementAndGet();
+  }
+  
+  /** @return a copy of this config, with a new version. */
+  public abstract FollowConfig copy();
+}
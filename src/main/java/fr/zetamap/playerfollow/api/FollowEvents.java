@@ -0,0 +1,166 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import arc.func.Cons;
+import arc.math.Mathf;
+
+
+/** 
+ * Fixed-size ring buffer of the recent events of a {@link FollowManager}, for post-mortems. <br>
+ * Recording is allocation-free, so it can be always on, and done from any thread. 
+ * The oldest events are overwritten when the buffer is full. <br>
+ * Slots are claimed with a CAS that never goes back to an older event, and fields are volatile, 
+ * so a reader never sees the fields of two events mixed.
+ */
+public class FollowEvents {
+  /** Capacity of new buffers, rounded up to a power of two. */
+  public static int defaultCapacity = 1024;
+  
+  private final int mask;
+  private final AtomicLong next = new AtomicLong();
+  /** 
+   * Sequence of the event in each slot, {@code -1} if empty, 
+   * or {@code -sequence-2} while being written, see {@link #sequenceOf(long)}.
+   */
+  private final AtomicLongArray sequences;
+  private final AtomicLongArray times, values;
+  private final AtomicReferenceArray<Type> types;
+  private final AtomicReferenceArray<Object> subjects, details;
+  
+  public FollowEvents() {
+    this(defaultCapacity);
+  }
+  
+  public FollowEvents(int capacity) {
+    int size = Mathf.nextPowerOfTwo(Math.max(2, capacity));
+    mask = size-1;
+    sequences = new AtomicLongArray(size);
+    for (int i=0; i<size; i++) sequences.set(i, -1);
+    times = new AtomicLongArray(size);
+    values = new AtomicLongArray(size);
+    types = new AtomicReferenceArray<>(size);
+    subjects = new AtomicReferenceArray<>(size);
+    details = new AtomicReferenceArray<>(size);
+  }
+  
+  /** 
+   * Records an event of the {@code subject}, usually the target of a follow. 
+   * The meaning of the {@code detail} and of the {@code value} depends on the {@code type}. <br>
+   * The event is dropped if a newer one already took its slot, after a writer stalled for a whole lap.
+   */
+  public void record(Type type, Object subject, Object detail, long value) {
+    long sequence = next.getAndIncrement();
+    int slot = (int)(sequence & mask);
+    while (true) {
+      long current = sequences.get(slot);
+      if (sequenceOf(current) >= sequence) return;
+      // An older event is still being written, wait for it rather than mixing the fields
+      if (current < -1) Thread.yield();
+      else if (sequences.compareAndSet(slot, current, -sequence-2)) break;
+    }
+    
+    times.set(slot, System.nanoTime());
+    types.set(slot, type);
+    subjects.set(slot, subject);
+    details.set(slot, detail);
+    values.set(slot, value);
+    sequences.set(slot, sequence);
+  }
+  
+  /** @return the sequence of the event written, or being written, for the state of a slot. */
+  private static long sequenceOf(long state) {
+    return state >= -1 ? state : -state-2;
+  }
+  
+  /** 
+   * Gives the last {@code limit} events to {@code cons}, oldest first. The {@link Event} is reused. <br>
+   * Events being written, or overwritten while reading, are skipped.
+   */
+  public void each(int limit, Cons<Event> cons) {
+    long last = next.get();
+    Event event = new Event();
+    
+    for (long sequence=Math.max(0, last - Math.min(limit, capacity())); sequence<last; sequence++) {
+      int slot = (int)(sequence & mask);
+      if (sequences.get(slot) != sequence) continue;
+      // Volatile reads, so they cannot be reordered after the check below
+      event.time = times.get(slot);
+      event.type = types.get(slot);
+      event.subject = subjects.get(slot);
+      event.detail = details.get(slot);
+      event.value = values.get(slot);
+      if (sequences.get(slot) != sequence) continue;
+      
+      event.sequence = sequence;
+      cons.get(event);
+    }
+  }
+  
+  /** @return the number of events recorded since the creation, including the overwritten ones. */
+  public long recorded() {
+    return next.get();
+  }
+  
+  public int capacity() {
+    return mask+1;
+  }
+  
+  
+  public enum Type {
+    /** Followers added to the follow of the subject. The detail is the follower, if only one. */
+    FOLLOWER_ADDED,
+    /** Followers removed from the follow of the subject. The detail is the follower, if only one. */
+    FOLLOWER_REMOVED,
+    /** Follow of the subject removed from the manager, with its number of followers. */
+    FOLLOW_REMOVED,
+    /** Layout of the follow of the subject recomputed, the value is the duration in nanoseconds. */
+    LAYOUT,
+    /** Mode of the follow of the subject changed, the detail is the new mode name. */
+    MODE,
+    /** Number of followers that cannot be updated changed, in the follow of the subject. */
+    SUPPRESSED,
+    /** Update failed, the detail is the exception. The subject is the target of the dropped follow, if known. */
+    FAILED,
+    /** Follow of the subject quarantined by the {@link Watchdog}, with its number of followers. */
+    QUARANTINED,
+    /** Follow of the subject released from quarantine, with its number of followers. */
+    RELEASED
+  }
+  
+  
+  public static class Event {
+    public long sequence, time, value;
+    public Type type;
+    public Object subject, detail;
+  }
+}
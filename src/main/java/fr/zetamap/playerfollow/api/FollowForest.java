@@ -0,0 +1,191 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+import arc.struct.IntSeq;
+import arc.struct.ObjectIntMap;
+import arc.struct.ObjectMap;
+import arc.struct.ObjectSet;
+import arc.struct.Seq;
+
+
+/** 
+ * Models the follows of a {@link FollowManager} as a forest, where each follower points to its followed target. <br>
+ * Trees are tracked with a union-find, to quickly reject loops between unrelated players, 
+ * and follows are ordered so that a follow is always updated after the follow moving its target. <br>
+ * The forest is rebuilt lazily, only when follows or followers have been changed.
+ */
+public class FollowForest<T extends Position> {
+  protected final FollowManager<T> manager;
+  /** Follows ordered from roots to leaves. Each tree is contiguous. */
+  public final Seq<Follow<T>> ordered = new Seq<>();
+  /** Start index of each tree in {@link #ordered}. */
+  public final IntSeq trees = new IntSeq();
+  /** Followed target of each follower. */
+  protected final ObjectMap<T, T> leaders = new ObjectMap<>();
+  /** Union-find of players, by index. */
+  protected final ObjectIntMap<T> ids = new ObjectIntMap<>();
+  protected final IntSeq parents = new IntSeq(), ranks = new IntSeq();
+  protected final Seq<Follow<T>> queue = new Seq<>();
+  protected final ObjectSet<Follow<T>> visited = new ObjectSet<>();
+  /** Set when follows are added or removed, changes of followers are detected with {@link Follow#changes()}. */
+  protected boolean dirty = true;
+  protected long lastChanges = -1;
+  
+  public FollowForest(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  /** Forces a rebuild at the next {@link #check()}. */
+  public void invalidate() {
+    dirty = true;
+  }
+  
+  /** Rebuilds the forest if follows or followers have been changed. Must be called while the manager is not updating. */
+  public void check() {
+    long changes = 0;
+    for (Follow<T> f : manager.all.values()) changes += f.changes();
+    if (!dirty && changes == lastChanges) return;
+    rebuild();
+    lastChanges = changes;
+    dirty = false;
+  }
+  
+  /** 
+   * @return whether the {@code follower} following the {@code target} would create a loop, 
+   *         i.e. the {@code follower} is the target itself or one of its (indirect) leaders.
+   */
+  public boolean wouldLoop(T follower, T target) {
+    if (follower == target) return true;
+    check();
+    int a = ids.get(follower, -1), b = ids.get(target, -1);
+    // Not in the same tree, so cannot be related
+    if (a == -1 || b == -1 || find(a) != find(b)) return false;
+    
+    // Same tree, so walk up from the target. The depth is bounded in case of a loop created elsewhere.
+    T current = leaders.get(target);
+    for (int i=0; current != null && i <= leaders.size; i++) {
+      if (current == follower) return true;
+      current = leaders.get(current);
+    }
+    return false;
+  }
+  
+  /** @return the followed target of the {@code follower}, or {@code null}. */
+  public T leader(T follower) {
+    return leaders.get(follower);
+  }
+  
+  /** @return the root of the tree of the {@code entity}, i.e. the player that everyone follows, directly or not. */
+  public T root(T entity) {
+    T current = entity, next;
+    for (int i=0; (next = leaders.get(current)) != null && i <= leaders.size; i++) current = next;
+    return current;
+  }
+  
+  protected void rebuild() {
+    leaders.clear();
+    ids.clear();
+    parents.clear();
+    ranks.clear();
+    
+    for (Follow<T> f : manager.all.values()) {
+      T target = f.followed();
+      Seq<T> followers = f.followers();
+      for (int i=0; i<followers.size; i++) {
+        T follower = followers.get(i);
+        if (leaders.containsKey(follower)) continue;
+        leaders.put(follower, target);
+        union(id(follower), id(target));
+      }
+    }
+    
+    // Breadth-first from roots, so the follow of a target is always after the follow moving it
+    ordered.clear();
+    trees.clear();
+    visited.clear();
+    for (Follow<T> f : manager.all.values()) {
+      if (leaders.containsKey(f.followed())) continue;
+      trees.add(ordered.size);
+      addTree(f);
+    }
+    
+    // Follows in a loop have no root, add them anyway to not stop updating them
+    if (ordered.size < manager.all.size) {
+      for (Follow<T> f : manager.all.values()) {
+        if (visited.contains(f)) continue;
+        trees.add(ordered.size);
+        addTree(f);
+      }
+    }
+  }
+  
+  protected void addTree(Follow<T> root) {
+    queue.clear();
+    queue.add(root);
+    visited.add(root);
+    ordered.add(root);
+    for (int i=0; i<queue.size; i++) {
+      Seq<T> followers = queue.get(i).followers();
+      for (int ii=0; ii<followers.size; ii++) {
+        Follow<T> f = manager.get(followers.get(ii));
+        if (f == null || !visited.add(f)) continue;
+        queue.add(f);
+        ordered.add(f);
+      }
+    }
+  }
+  
+  protected int id(T entity) {
+    int id = ids.get(entity, -1);
+    if (id != -1) return id;
+    id = parents.size;
+    ids.put(entity, id);
+    parents.add(id);
+    ranks.add(0);
+    return id;
+  }
+  
+  protected int find(int id) {
+    while (parents.get(id) != id) {
+      parents.set(id, parents.get(parents.get(id))); // path halving
+      id = parents.get(id);
+    }
+    return id;
+  }
+  
+  protected void union(int a, int b) {
+    a = find(a);
+    b = find(b);
+    if (a == b) return;
+    if (ranks.get(a) < ranks.get(b)) { int t = a; a = b; b = t; }
+    parents.set(b, a);
+    if (ranks.get(a) == ranks.get(b)) ranks.incr(a, 1);
+  }
+}
@@ -26,14 +26,27 @@
 
 package fr.zetamap.playerfollow.api;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import arc.func.Cons;
 import arc.func.Cons2;
 import arc.func.Func;
+import arc.math.Mathf;
 import arc.math.geom.Position;
 import arc.math.geom.Vec2;
+import arc.struct.FloatSeq;
+import arc.struct.IntSeq;
 import arc.struct.ObjectMap;
 import arc.struct.Seq;
 import arc.util.Interval;
 import arc.util.Log;
+import arc.util.Strings;
 
 import mindustry.Vars;
 import mindustry.async.AsyncProcess;
@@ -50,31 +63,101 @@ public class FollowManager<T extends Position> {
   protected final float updateInterval;
   protected final Cons2<T, Vec2> notifier;
   protected final Func<T, String> followerToString;
+  /** 
+   * Gives access to the state of the entities of this manager, through the {@link #entities} buffer, 
+   * so follows never read entities while computing.
+   */
+  public final Accessor<T> accessor;
+  /** State of entities, captured on the main thread before each update. */
+  public final EntityBuffer<T> entities;
+  /** Maximum number of followers moved per tick when changing the mode of all follows. */
+  public static int migrationBudget = 256;
+  /** Targets of follows waiting to be migrated to {@link #migrationMode}. */
+  protected final Seq<T> migrations = new Seq<>();
+  protected FollowMode<T> migrationMode;
+  /** Optional snapshot of follows, to restore them after a restart. */
+  public FollowSnapshot<T> snapshot;
+  /** Lock-free counters, exposed with JMX by {@link FollowMetrics}. */
+  public final FollowStats stats = new FollowStats();
+  /** Recent events, always recorded, to dump them with {@link #dumpEvents(int, Cons)} after an issue. */
+  public final FollowEvents events = new FollowEvents();
+  /** Degrades follows when updates exceed their time budget. */
+  public final Degradation<T> degradation = new Degradation<>(this);
+  /** Quarantines follows that are too slow to compute, whatever the total cost of updates. */
+  public final Watchdog<T> watchdog = new Watchdog<>(this);
+  /** Positions applied at each update, for other plugins. Prefer it to reading follows, which is not thread-safe. */
+  public final PositionStream<T> positions = new PositionStream<>(this);
+  /** Extrapolates leaders, so followers are placed where their leader will be. */
+  public final LeaderMotion<T> motion = new LeaderMotion<>(this);
+  /** Limits joins with the cost model of modes, see {@link #join(Position, Position, FollowMode)}. */
+  public final Admission<T> admission = new Admission<>(this);
+  /** Optional recorder of the updates inputs, to replay them offline. */
+  public FollowRecorder<T> recorder;
+  /** Whether to push apart overlapping followers of different follows. */
+  public boolean separation;
+  /** 
+   * Maximum cell size of the separation grid. 
+   * Bigger followers are compared with all others instead, so they don't make the grid too coarse.
+   */
+  public static float separationCell = 4 * Vars.tilesize;
+  /** Whether to move grounded followers placed in solid tiles, using the {@link Passability} grid. */
+  public boolean avoidSolids = true;
+  /** Follows as a forest, to detect loops and to update chained follows in order. */
+  public final FollowForest<T> forest = new FollowForest<>(this);
+  /** Positions computed during an update, applied after all follows are computed. */
+  protected final Placements<T> placements = new Placements<>();
+  /** Buffers and tasks when computing with the {@link Updater#executor}. */
+  protected final Seq<Placements<T>> buffers = new Seq<>();
+  protected final Seq<Future<?>> futures = new Seq<>();
+  /** Time of the submission to the {@link Updater#executor}, and of the end of the last task. */
+  protected long submitted;
+  protected final AtomicLong lastFinished = new AtomicLong();
+  protected final SpatialHash grid = new SpatialHash();
+  /** Separation buffers. Placed followers come first, then the followers not updated, as static obstacles. */
+  private final FloatSeq pushX = new FloatSeq(), pushY = new FloatSeq(), 
+                         separatedX = new FloatSeq(), separatedY = new FloatSeq(), separatedSizes = new FloatSeq();
+  private final Seq<Follow<T>> separatedFollows = new Seq<>();
+  private final IntSeq nearby = new IntSeq(), stamps = new IntSeq(), large = new IntSeq();
+  private final Vec2 position = new Vec2();
 
-  public FollowManager(Cons2<T, Vec2> notifier, Func<T, String> followerToString, float updateIntervalTicks) {
+  public FollowManager(Accessor<T> accessor, Cons2<T, Vec2> notifier, Func<T, String> followerToString, 
+                       float updateIntervalTicks) {
+    this.accessor = entities = new EntityBuffer<>(accessor);
     this.notifier = notifier;
     this.followerToString = followerToString;
     this.updateInterval = updateIntervalTicks;
     
     Updater.init();
     Updater.add(this);
+    FollowMetrics.register(this);
   }
 
-  /** Adds a follow to the list. */
+  /** Adds a follow to the list. The follow previously registered for the same target is freed. */
   public <F extends Follow<T>> F add(F follow) {
-    (updating ? pendingChanges : all).put(follow.followed(), follow);
+    forest.invalidate();
+    degradation.apply(follow);
+    if (follow instanceof AbstractFollow) ((AbstractFollow<T>)follow).events = events;
+    free((updating ? pendingChanges : all).put(follow.followed(), follow), follow);
     return follow;
   }
   
   /** Creates a follow from the specified {@code mode} for the specified {@code target}, and adds it to the list. */
   public <F extends Follow<T>> F add(FollowMode<T> mode, T target) {
-    return add(mode.create(target));
+    return add(mode.create(target, accessor));
   }
 
-  /** Removes a follow from the list. */
+  /** Removes a follow from the list. The follow must not be used after that. */
   public <F extends Follow<T>> boolean remove(F follow) {
+    forest.invalidate();
+    events.record(FollowEvents.Type.FOLLOW_REMOVED, follow.followed(), null, follow.followers().size);
     follow.clear();
-    if (!updating) return all.remove(follow.followed()) != null;
+    if (!updating) {
+      Follow<T> last = all.get(follow.followed());
+      if (last != follow) return false;
+      all.remove(follow.followed());
+      free(last, null);
+      return true;
+    }
     boolean found = get(follow.followed()) != null;
     if (found) pendingChanges.put(follow.followed(), null);
     return found;
@@ -84,11 +167,36 @@ public class FollowManager<T extends Position> {
   public boolean remove(T target) {
     Follow<T> last = updating ? get(target) : all.remove(target);
     if (last == null) return false;
+    forest.invalidate();
+    events.record(FollowEvents.Type.FOLLOW_REMOVED, target, null, last.followers().size);
     if (updating) pendingChanges.put(target, null);
     last.clear();
+    if (!updating) free(last, null);
     return true;
   }
   
+  /** 
+   * Makes the {@code follower} join the follow of the {@code target}, or a new follow of the {@code mode} if none, 
+   * when admitted by the {@link #admission}. The follower leaves its previous follow. <br>
+   * The follow is switched to the cheap mode of the admission if the join has been {@link Admission.Result#REDIRECTED}.
+   * 
+   * @return the admission result, the follower only joined if {@link Admission.Result#admitted()}.
+   */
+  public Admission.Result join(T follower, T target, FollowMode<T> mode) {
+    Admission.Result result = admission.check(target, mode, 1);
+    if (!result.admitted()) return result;
+    
+    Follow<T> follow = get(target);
+    if (result == Admission.Result.REDIRECTED) 
+      follow = follow == null ? add(admission.cheapMode(), target) : changeMode(follow, admission.cheapMode());
+    else if (follow == null) follow = add(mode, target);
+    
+    removeFollower(follower);
+    follow.add(follower);
+    admission.update();
+    return result;
+  }
+  
   /** Remove a {@code follower} from all follows. */
   public void removeFollower(T follower) {
     all.each((p, f) -> f.remove(follower));
@@ -97,6 +205,8 @@ public class FollowManager<T extends Position> {
   /** Find a follow by the followed player. */
   @SuppressWarnings("unchecked")
   public <F extends Follow<T>> F get(T target) {
+    // Changes done while updating are only registered at the end sync point
+    if (updating && pendingChanges.containsKey(target)) return (F)pendingChanges.get(target);
     return (F)all.get(target);
   }
   
@@ -110,84 +220,478 @@ public class FollowManager<T extends Position> {
   }
   
   /** 
-   * Change the mode of a follow by instantiating a new one and copying the followers. <br>
-   * If the follow is not already added, it will be after copying.
+   * Change the mode of a follow by creating a new one and moving the followers. <br>
+   * If the follow is not already added, it will be after moving.
    */
   public <F extends Follow<T>> F changeMode(F follow, FollowMode<T> mode) {
-    F f = add(mode, follow.followed());
-    f.addAll(follow.followers());
-    follow.clear();
-    return f;
+    events.record(FollowEvents.Type.MODE, follow.followed(), mode.name, follow.followers().size);
+    F f = mode.create(follow.followed(), accessor);
+    f.takeAll(follow);
+    return add(f);
   }
   
   /** 
-   * Change the mode of a follow by instantiating a new one and copying the followers. <br>
+   * Change the mode of a follow by creating a new one and moving the followers. <br>
    * If the follow is not in the list, it will be added. 
    */
   public <F extends Follow<T>> F changeMode(T target, FollowMode<T> mode) {
-    F f = get(target), newFollow = add(mode, target);
-    if (f == null) return newFollow;
-    newFollow.addAll(f.followers());
-    f.clear();
-    return newFollow;
+    F f = get(target), newFollow = mode.create(target, accessor);
+    events.record(FollowEvents.Type.MODE, target, mode.name, f == null ? 0 : f.followers().size);
+    if (f != null) newFollow.takeAll(f);
+    return add(newFollow);
   }
   
-  /** Change the mode of all follows. */
+  /** 
+   * Change the mode of all follows. <br>
+   * Follows are migrated in batches of {@link #migrationBudget} followers per tick, 
+   * the remaining ones will be migrated in the next ticks.
+   */
   public void changeMode(FollowMode<T> mode) {
+    migrations.clear();
     all.each((p, f) -> {
-      Follow<T> newFollow = add(mode, p);
-      newFollow.addAll(f.followers());
-      f.clear();
+      if (FollowMode.of(f) != mode) migrations.add(p);
+    });
+    migrationMode = mode;
+    if (!updating) migrate();
+  }
+  
+  /** @return whether follows are still waiting to be migrated to a new mode. */
+  public boolean migrating() {
+    return migrationMode != null;
+  }
+  
+  /** Migrates waiting follows to the new mode, until the budget is exceeded. Must be called while not updating. */
+  protected void migrate() {
+    if (migrationMode == null) return;
+    
+    for (int moved=0; !migrations.isEmpty() && moved < migrationBudget;) {
+      Follow<T> f = get(migrations.pop());
+      // Removed or changed since the migration started
+      if (f == null || FollowMode.of(f) == migrationMode) continue;
+      moved += f.followers().size;
+      changeMode(f, migrationMode);
+    }
+    
+    if (migrations.isEmpty()) migrationMode = null;
+  }
+  
+  /** Called by the {@link Updater} on the main thread, before updating follows. */
+  protected void begin() {
+    long start = System.nanoTime();
+    if (recorder != null && recorder.closeRequested()) {
+      recorder.close();
+      recorder = null;
+    }
+    migrate();
+    degradation.check();
+    admission.update();
+    if (snapshot != null) snapshot.update();
+    forest.check();
+    
+    int followers = 0;
+    for (int i=0; i<forest.ordered.size; i++) followers += forest.ordered.get(i).followers().size;
+    stats.follows = all.size;
+    stats.followers = followers;
+    stats.sync(System.nanoTime() - start);
+  }
+  
+  /** 
+   * Captures the state of entities, and records the inputs of the update if recording. 
+   * Called on the main thread, once the update is decided.
+   */
+  protected void prepare() {
+    long start = System.nanoTime();
+    entities.capture(forest.ordered);
+    motion.update(forest.ordered);
+    if (recorder != null) recorder.recordInputs();
+    stats.sync(System.nanoTime() - start);
+  }
+  
+  /** 
+   * Computes all follows. Called by the {@link Updater}, the positions are applied later by {@link #writeback()}. <br>
+   * Positions are clamped to the world {@code width} and {@code height}.
+   */
+  protected void update(float width, float height) {
+    placements.clear();
+    compute(0, forest.trees.size, placements, width, height);
+    finish(placements, width, height);
+  }
+  
+  /** 
+   * Computes the follows of trees from {@code from} (inclusive) to {@code to} (exclusive) of the {@link #forest}. <br>
+   * Follows are computed in the forest order, so a chained follow starts from the new position 
+   * of its target, and a whole chain settles in a single update. <br>
+   * Trees are independent, so ranges can be computed in parallel, in different buffers.
+   */
+  protected void compute(int from, int to, Placements<T> out, float width, float height) {
+    Seq<Follow<T>> ordered = forest.ordered;
+    int start = from >= forest.trees.size ? ordered.size : forest.trees.get(from),
+        end = to >= forest.trees.size ? ordered.size : forest.trees.get(to);
+    Vec2 temp = new Vec2();
+    
+    for (int i=start; i<end; i++) {
+      Follow<T> f = ordered.get(i);
+      T target = f.followed();
+      if (f.shouldRemove()) {
+        out.failed.add(target);
+        continue;
+      } else if (degradation.skip(f, i) || watchdog.skip(f, i)) continue;
+      
+      int size = out.size(), leader = out.indexOf(target);
+      long start = System.nanoTime();
+      try { 
+        // A target also following is already placed from its own extrapolated leader
+        f.compute(leader == -1 ? motion.extrapolate(target, temp) : out.get(leader, temp), 
+                  (fp, pos) -> out.add(f, fp, pos.clamp(0, 0, width, height))); 
+        out.time(f, System.nanoTime() - start);
+        if (f.idling()) stats.idle.add(f.followers().size);
+        // Followers skipped because they or the target cannot be updated
+        else stats.suppressed.add(f.followers().size - (out.size() - size));
+      } catch (Exception t) {
+        out.truncate(size);
+        out.failed.add(target);
+        stats.failed.increment();
+        events.record(FollowEvents.Type.FAILED, target, t, 0);
+        Log.err("Failed to update follow of target '"+followerToString.get(target)+"'", t);
+        Log.warn("Follow removed to avoid future errors.");
+      }
+    }
+  }
+  
+  /** Separates the computed positions. Failed follows are removed by {@link #writeback()}. */
+  protected void finish(Placements<T> placements, float width, float height) {
+    // Recorded before being separated, as the replay only computes follows
+    if (recorder != null) recorder.recordOutputs(placements);
+    if (separation) separate(placements, width, height);
+    if (avoidSolids) avoidSolids(placements);
+  }
+  
+  /** 
+   * Applies and notifies the computed positions in one batch, and removes failed follows. 
+   * The measured update times calibrate the cost model of modes. 
+   * Called on the main thread, at the end sync point.
+   */
+  protected void writeback() {
+    long start = System.nanoTime();
+    placements.failed.each(t -> pendingChanges.put(t, null));
+    for (int i=0, n=placements.size(); i<n; i++) {
+      T follower = placements.followers.get(i);
+      placements.get(i, position);
+      placements.follows.get(i).apply(follower, position);
+      notifier.get(follower, position);
+    }
+    stats.sent.add(placements.size());
+    positions.publish(placements);
+    watchdog.check(placements);
+    // Idle follows are skipped, so their time is not the cost of an update
+    for (int i=0; i<placements.timed.size; i++) {
+      Follow<T> follow = placements.timed.get(i);
+      FollowMode<T> mode = follow.idling() ? null : FollowMode.of(follow);
+      if (mode != null) mode.sample(follow.followers().size, placements.costs.get(i));
+    }
+    placements.clear();
+    stats.sync(System.nanoTime() - start);
+  }
+  
+  /** Applies the follows added or removed while updating. Called on the main thread, after {@link #writeback()}. */
+  protected void applyChanges() {
+    if (pendingChanges.isEmpty()) return;
+    long start = System.nanoTime();
+    forest.invalidate();
+    pendingChanges.each((p, f) -> {
+      if (f == null) free(all.remove(p), null);
+      else free(all.put(p, f), f);
     });
+    pendingChanges.clear();
+    stats.sync(System.nanoTime() - start);
+  }
+  
+  /** 
+   * Runs a whole update synchronously on the calling thread, without the {@link Updater}. <br>
+   * Used when no async core is running, e.g. headless by benchmarks and replays.
+   */
+  public void updateNow(float width, float height) {
+    begin();
+    if (!all.isEmpty()) {
+      updating = true;
+      prepare();
+      long start = System.nanoTime();
+      update(width, height);
+      stats.update(System.nanoTime() - start);
+      writeback();
+      updating = false;
+    }
+    applyChanges();
+  }
+  
+  /** 
+   * Splits the trees of the {@link #forest} in {@code tasks} ranges of about the same number of followers, 
+   * and submits them to the {@link Updater#executor}.
+   */
+  protected void submit(int tasks, float width, float height) {
+    futures.clear();
+    submitted = System.nanoTime();
+    lastFinished.set(submitted);
+    int trees = forest.trees.size, total = 0;
+    if (trees == 0) return;
+    for (int i=0; i<forest.ordered.size; i++) total += forest.ordered.get(i).followers().size;
+    
+    int perTask = Math.max(1, total / Math.max(1, tasks)), from = 0, count = 0;
+    for (int t=0; t<trees; t++) {
+      int end = t+1 >= trees ? forest.ordered.size : forest.trees.get(t+1);
+      for (int i=forest.trees.get(t); i<end; i++) count += forest.ordered.get(i).followers().size;
+      
+      if (count >= perTask || t == trees-1) {
+        if (buffers.size <= futures.size) buffers.add(new Placements<>());
+        Placements<T> buffer = buffers.get(futures.size);
+        int f = from, to = t+1;
+        buffer.clear();
+        futures.add(Updater.executor.submit(() -> {
+          compute(f, to, buffer, width, height);
+          lastFinished.accumulateAndGet(System.nanoTime(), Math::max);
+        }));
+        from = t+1;
+        count = 0;
+      }
+    }
+  }
+  
+  /** Waits for the tasks submitted by {@link #submit(int, float, float)}, then merges and applies their results. */
+  protected void collect(float width, float height) {
+    placements.clear();
+    for (int i=0; i<futures.size; i++) {
+      try { futures.get(i).get(); } 
+      catch (Exception e) { 
+        events.record(FollowEvents.Type.FAILED, null, e, 0);
+        Log.err("Failed to compute follows", e); 
+      }
+      placements.addAll(buffers.get(i));
+    }
+    futures.clear();
+    
+    // Time spent by the tasks, without the time waiting for the end sync point
+    long start = System.nanoTime();
+    finish(placements, width, height);
+    stats.update(lastFinished.get() - submitted + System.nanoTime() - start);
+  }
+  
+  /** 
+   * Pushes apart overlapping followers of different follows, in a single pass. <br>
+   * Followers that are not updated, e.g. idle or skipped, are static obstacles: they push placed ones without moving. <br>
+   * Followers are hashed in a grid, sized after the biggest follower up to {@link #separationCell}, 
+   * so only close followers are compared. Followers too big for the grid are compared with all others.
+   */
+  protected void separate(Placements<T> placements, float width, float height) {
+    int n = placements.size();
+    if (n == 0) return;
+    
+    separatedX.clear();
+    separatedY.clear();
+    separatedSizes.clear();
+    separatedFollows.clear();
+    separatedX.addAll(placements.xs);
+    separatedY.addAll(placements.ys);
+    separatedSizes.addAll(placements.sizes);
+    separatedFollows.addAll(placements.follows);
+    Seq<Follow<T>> ordered = forest.ordered;
+    for (int i=0; i<ordered.size; i++) {
+      Follow<T> follow = ordered.get(i);
+      Seq<T> followers = follow.followers();
+      for (int ii=0; ii<followers.size; ii++) {
+        T follower = followers.get(ii);
+        if (placements.indexOf(follower) != -1 || accessor.dead(follower)) continue;
+        separatedX.add(accessor.x(follower));
+        separatedY.add(accessor.y(follower));
+        separatedSizes.add(follow.hitSize(follower));
+        separatedFollows.add(follow);
+      }
+    }
+    int total = separatedX.size;
+    if (total < 2) return;
+    
+    float biggest = 0;
+    for (int i=0; i<total; i++) biggest = Math.max(biggest, separatedSizes.get(i));
+    float cell = Math.min(biggest * 2, separationCell);
+    grid.build(separatedX, separatedY, cell);
+    large.clear();
+    for (int i=0; i<total; i++) {
+      if (separatedSizes.get(i) * 2 > cell) large.add(i);
+    }
+    
+    pushX.setSize(n);
+    pushY.setSize(n);
+    stamps.setSize(total);
+    for (int i=0; i<n; i++) {
+      pushX.set(i, 0);
+      pushY.set(i, 0);
+    }
+    for (int i=0; i<total; i++) stamps.set(i, -1);
+    
+    // Pairs between static obstacles are ignored, so each pair is processed from its placed follower of lower index
+    for (int i=0; i<n; i++) {
+      if (separatedSizes.get(i) * 2 > cell) continue;
+      grid.nearby(separatedX.get(i), separatedY.get(i), nearby);
+      
+      for (int k=0; k<nearby.size; k++) {
+        int j = nearby.get(k);
+        if (j <= i || stamps.get(j) == i || separatedSizes.get(j) * 2 > cell) continue;
+        stamps.set(j, i);
+        push(i, j, n);
+      }
+    }
+    
+    // Big followers could be missed by the grid, so compare them with all others
+    for (int k=0; k<large.size; k++) {
+      int i = large.get(k);
+      for (int j=0; j<total; j++) {
+        if (j == i || (j >= n && i >= n) || (j < i && separatedSizes.get(j) * 2 > cell)) continue;
+        push(i, j, n);
+      }
+    }
+    
+    for (int i=0; i<n; i++) {
+      placements.set(i, Mathf.clamp(placements.xs.get(i) + pushX.get(i), 0, width),
+                        Mathf.clamp(placements.ys.get(i) + pushY.get(i), 0, height));
+    }
+  }
+  
+  /** 
+   * Pushes apart the followers {@code i} and {@code j} of the separation buffers, if they overlap. 
+   * Only the placed ones, of index lower than {@code placed}, are moved.
+   */
+  private void push(int i, int j, int placed) {
+    if (separatedFollows.get(i) == separatedFollows.get(j)) return;
+    float dx = separatedX.get(j) - separatedX.get(i), dy = separatedY.get(j) - separatedY.get(i),
+          distance = (float)Math.sqrt(dx * dx + dy * dy), 
+          overlap = separatedSizes.get(i) + separatedSizes.get(j) - distance;
+    if (overlap <= 0) return;
+    
+    // Same position, so use an arbitrary but stable direction
+    if (distance < 0.001f) {
+      dx = Mathf.cos(Math.min(i, j));
+      dy = Mathf.sin(Math.min(i, j));
+    } else {
+      dx /= distance;
+      dy /= distance;
+    }
+    
+    // A static obstacle does not move, so the placed follower takes the whole push
+    if (i < placed && j < placed) overlap /= 2f;
+    if (i < placed) {
+      pushX.incr(i, -dx * overlap);
+      pushY.incr(i, -dy * overlap);
+    }
+    if (j < placed) {
+      pushX.incr(j, dx * overlap);
+      pushY.incr(j, dy * overlap);
+    }
+  }
+  
+  /** Moves grounded followers placed in solid tiles to the nearest free tile. */
+  protected void avoidSolids(Placements<T> placements) {
+    for (int i=0, n=placements.size(); i<n; i++) {
+      if (!accessor.grounded(placements.followers.get(i))) continue;
+      if (Passability.free(placements.get(i, position))) placements.set(i, position.x, position.y);
+    }
+  }
+  
+  /** Gives the last {@code limit} {@link #events} to {@code out}, oldest first, as readable lines. */
+  public void dumpEvents(int limit, Cons<String> out) {
+    long now = System.nanoTime();
+    events.each(limit, e -> out.get("[-" + Strings.fixed((now - e.time) / 1e9f, 3) + "s] " + describe(e)));
+  }
+  
+  /** @return a readable description of the {@code event}. */
+  @SuppressWarnings("unchecked")
+  protected String describe(FollowEvents.Event event) {
+    String text = event.type + (event.subject == null ? "" : " '" + followerToString.get((T)event.subject) + "'") + ": ";
+    switch (event.type) {
+      case FOLLOWER_ADDED: case FOLLOWER_REMOVED:
+        return text + (event.detail == null ? event.value + " followers" : "'" + followerToString.get((T)event.detail) + "'");
+      case LAYOUT: return text + Strings.fixed(event.value / 1e6f, 3) + " ms";
+      case MODE: return text + event.detail + " (" + event.value + " followers)";
+      case FAILED: return text + event.detail;
+      default: return text + event.value + " followers";
+    }
+  }
+  
+  /** Gives back the {@code last} follow to its mode, if it has been replaced by {@code by}. */
+  protected void free(Follow<T> last, Follow<T> by) {
+    if (last == null || last == by) return;
+    watchdog.forget(last);
+    FollowMode.freeFollow(last);
   }
   
   
-  /** Global {@link FollowManager} updater. */
+  /** 
+   * Global {@link FollowManager} updater. <br>
+   * By default, follows are computed in the {@link Vars#asyncCore} thread. 
+   * With {@link #setThreads(int, int)}, they are computed in a dedicated pool instead, 
+   * submitted at the {@link AsyncProcess#begin()} sync point. <br>
+   * In both cases, entities are captured on the main thread before computing, 
+   * and positions are applied on the main thread at the {@link AsyncProcess#end()} sync point.
+   */
   public static class Updater {
     public static final Seq<FollowManager<Position>> managers = new Seq<>();
+    /** Dedicated pool, or {@code null} to use the {@link Vars#asyncCore} thread. */
+    public static ThreadPoolExecutor executor;
+    /** 
+     * Pool splitting the placement of large follows, created with the {@link #executor}. 
+     * It's separated so that tasks of the {@link #executor} can wait for it without starving.
+     */
+    public static ForkJoinPool splitter;
     private static boolean initialized, updating;
+    private static int threads;
     
     public static void init() {
-      if (initialized) return;
+      // No async core when used headless, e.g. by benchmarks, managers are then updated with updateNow()
+      if (initialized || Vars.asyncCore == null) return;
       
-      Vars.asyncCore.processes.add(new AsyncProcess() {      
+      Vars.asyncCore.processes.add(new AsyncProcess() {
+        public void begin() {
+          managers.each(FollowManager::begin);
+          if (executor == null) return;
+          
+          int wwidth = Vars.world.unitWidth(), wheight = Vars.world.unitHeight();
+          managers.each(m -> {
+            if (m.updating = !m.all.isEmpty() && m.timer.get(m.updateInterval)) {
+              updating = true;
+              m.prepare();
+              m.submit(threads, wwidth, wheight);
+            }
+          });
+        }
+        
         public void process() {
           int wwidth = Vars.world.unitWidth(), wheight = Vars.world.unitHeight();
           managers.each(m -> m.updating, m -> {
-            m.all.each((p, f) -> {
-              if (f.shouldRemove()) {
-                m.pendingChanges.put(p, null);
-                return;
-              }
-              
-              try { 
-                f.update((fp, out) -> m.notifier.get(fp, out.clamp(0, 0, wwidth, wheight))); 
-              } catch (Exception t) {
-                Log.err("Failed to update follow of target '"+m.followerToString.get(f.followed())+"'", t);
-                Log.warn("Follow removed to avoid future errors.");
-                m.pendingChanges.put(p, null);
-              }
-            });  
+            long start = System.nanoTime();
+            m.update(wwidth, wheight);
+            m.stats.update(System.nanoTime() - start);
           });
         }
         
         public boolean shouldProcess() {
+          // Already submitted to the dedicated pool
+          if (executor != null) return false;
           managers.each(m -> {
-            if (m.updating = !m.all.isEmpty() && m.timer.get(m.updateInterval))
+            if (m.updating = !m.all.isEmpty() && m.timer.get(m.updateInterval)) {
               updating = true;
+              m.prepare();
+            }
           });
           return updating;
         }
         
         public void end() {
           if (!updating) return;
-          managers.each(m -> m.updating = !m.pendingChanges.isEmpty(), m -> {
-            m.pendingChanges.each((p, f) -> {
-              if (f == null) m.all.remove(p);
-              else m.all.put(p, f);
-            });
+          int wwidth = Vars.world.unitWidth(), wheight = Vars.world.unitHeight();
+          managers.each(m -> m.updating && !m.futures.isEmpty(), m -> m.collect(wwidth, wheight));
+          managers.each(m -> m.updating, FollowManager::writeback);
+          
+          managers.each(m -> {
             m.updating = false;
-            m.pendingChanges.clear();
+            m.applyChanges();
           });
           updating = false;
         }
@@ -196,6 +700,44 @@ public class FollowManager<T extends Position> {
       initialized = true;
     }
     
+    /** 
+     * Uses a dedicated pool of {@code threads} to compute follows, with a queue of {@code queueSize} tasks. 
+     * When the queue is full, tasks are computed by the main thread. <br>
+     * {@code 0} threads means to use the {@link Vars#asyncCore} thread. <br>
+     * Must be called from the main thread.
+     */
+    public static void setThreads(int threads, int queueSize) {
+      shutdown();
+      Updater.threads = threads;
+      if (threads <= 0) return;
+      
+      int[] count = {0};
+      executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+          new ArrayBlockingQueue<>(Math.max(1, queueSize)), 
+          r -> {
+            Thread t = new Thread(r, "PlayerFollow-Worker-" + count[0]++);
+            t.setDaemon(true);
+            return t;
+          }, 
+          new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      splitter = new ForkJoinPool(threads, pool -> {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        t.setName("PlayerFollow-Splitter-" + t.getPoolIndex());
+        return t;
+      }, null, false);
+    }
+    
+    /** Stops the dedicated pool, if any. Must be called from the main thread. */
+    public static void shutdown() {
+      if (executor == null) return;
+      // Already submitted tasks are still collected at the end sync point
+      executor.shutdown();
+      executor = null;
+      splitter.shutdown();
+      splitter = null;
+    }
+    
     @SuppressWarnings("unchecked")
     public static void add(FollowManager<?> manager) {
       managers.add((FollowManager<Position>)manager);
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import arc.util.Log;
+
+
+/** 
+ * Registers the {@link FollowStats} of managers and the counters of modes as MBeans, 
+ * to monitor the plugin with JMX tools. <br>
+ * Managers are registered as {@code fr.zetamap.playerfollow:type=FollowManager,name=<name>}, 
+ * and modes as {@code fr.zetamap.playerfollow:type=FollowMode,name=<name>}.
+ */
+public class FollowMetrics {
+  public static final String DOMAIN = "fr.zetamap.playerfollow";
+  
+  public interface ManagerMXBean {
+    int getFollows();
+    int getFollowers();
+    long getUpdates();
+    double getTotalUpdateMillis();
+    double getAverageUpdateMillis();
+    double getMaxUpdateMillis();
+    double getTotalSyncMillis();
+    long getSentPositions();
+    long getSuppressedPositions();
+    long getIdlePositions();
+    long getFailedFollows();
+    int getDegradationLevel();
+    double getProjectedCostMillis();
+    double getAdmissionBudgetMillis();
+    void resetCounters();
+  }
+  
+  public interface ModeMXBean {
+    String getName();
+    long getLayoutRecomputes();
+    void resetCounters();
+  }
+  
+  public static void register(FollowManager<?> manager) {
+    FollowStats stats = manager.stats;
+    register("FollowManager", manager.getClass().getSimpleName(), new ManagerMXBean() {
+      public int getFollows() { return stats.follows; }
+      public int getFollowers() { return stats.followers; }
+      public long getUpdates() { return stats.updates.sum(); }
+      public double getTotalUpdateMillis() { return stats.updateNanos.sum() / 1e6; }
+      public double getMaxUpdateMillis() { return stats.maxUpdateNanos.get() / 1e6; }
+      public double getTotalSyncMillis() { return stats.syncNanos.sum() / 1e6; }
+      public long getSentPositions() { return stats.sent.sum(); }
+      public long getSuppressedPositions() { return stats.suppressed.sum(); }
+      public long getIdlePositions() { return stats.idle.sum(); }
+      public long getFailedFollows() { return stats.failed.sum(); }
+      public int getDegradationLevel() { return manager.degradation.level(); }
+      public double getProjectedCostMillis() { return manager.admission.projected(); }
+      public double getAdmissionBudgetMillis() { return manager.admission.budget; }
+      public void resetCounters() { stats.reset(); }
+      
+      public double getAverageUpdateMillis() { 
+        long updates = stats.updates.sum();
+        return updates == 0 ? 0 : stats.updateNanos.sum() / 1e6 / updates; 
+      }
+    });
+  }
+  
+  public static void register(FollowMode<?> mode) {
+    register("FollowMode", mode.name, new ModeMXBean() {
+      public String getName() { return mode.name; }
+      public long getLayoutRecomputes() { return mode.recomputes.sum(); }
+      public void resetCounters() { mode.recomputes.reset(); }
+    });
+  }
+  
+  /** Registers the {@code bean}. A suffix is added to the {@code name} if already used. */
+  protected static void register(String type, String name, Object bean) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName id = name(type, name);
+      for (int i=2; server.isRegistered(id); i++) id = name(type, name + "-" + i);
+      server.registerMBean(bean, id);
+    } catch (JMException | SecurityException e) {
+      Log.err("[PlayerFollow] Failed to register the MBean of " + type + " '" + name + "'", e);
+    }
+  }
+  
+  protected static ObjectName name(String type, String name) throws JMException {
+    return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+  }
+}
@@ -26,37 +26,134 @@
 
 package fr.zetamap.playerfollow.api;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import arc.func.Cons;
-import arc.func.Func;
+import arc.func.Func2;
 import arc.math.geom.Position;
 import arc.struct.ObjectMap;
+import arc.struct.Seq;
 
 
+/** 
+ * A registered follow mode. <br>
+ * Modes are not bound to an entity type, the {@link Accessor} of the entities is given when creating a follow.
+ */
 @SuppressWarnings("unchecked")
 public class FollowMode<T extends Position> {
   protected static final ObjectMap<String, FollowMode<?>> modes = new ObjectMap<>();
   protected static final ObjectMap<Class<?>, FollowMode<?>> modesTypes = new ObjectMap<>();
+  /** Maximum number of unused follows kept by each mode. */
+  public static int maxPooled = 32;
   
   public final String name;
   public final Class<?> type;
-  protected final Func<T, Follow<T>> constructor;
+  protected final Func2<T, Accessor<T>, Follow<T>> constructor;
+  /** Number of layouts recomputed by follows of this mode. */
+  public final LongAdder recomputes = new LongAdder();
+  /** 
+   * Cost model of a follow of this mode, in microseconds per update, used by the {@link Admission}: 
+   * {@code fixedCost + followerCost * followers^costExponent}. <br>
+   * When {@link #calibrate calibrating}, the costs given here are only used until enough updates have been measured.
+   */
+  public float fixedCost = 2f, followerCost = 0.3f, costExponent = 1f;
+  /** Whether to fit {@link #fixedCost} and {@link #followerCost} to the measured update times, see {@link #sample(int, long)}. */
+  public static boolean calibrate = true;
+  /** Measured updates needed before the fitted costs replace the given ones. */
+  public static int calibrationSamples = 200;
+  /** Weight of each new measure in the fit, so the costs follow load changes. */
+  public static float calibrationWeight = 0.002f;
+  /** Weighted sums of the least squares fit, with {@code x = followers^costExponent} and {@code y} in microseconds. */
+  protected double sw, sx, sy, sxx, sxy;
+  protected long samples;
+  /** Unused follows, to reuse them instead of allocating new ones with their own pools. */
+  protected final Seq<AbstractFollow<T>> pool = new Seq<>(false, 8);
 
-  FollowMode(String name, Class<Follow<T>> type, Func<T, Follow<T>> constructor) {
+  FollowMode(String name, Class<?> type, Func2<T, Accessor<T>, Follow<T>> constructor) {
     this.name = name; 
     this.type = type;
     this.constructor = constructor;
   }
   
-  /** Consider using {@link FollowManager#add(FollowMode, Player)} instead, for a proper registration. */
-  public <F extends Follow<T>> F create(T target) {
-    return (F)constructor.get(target);
+  /** Sets the cost model, and forgets the measured updates. */
+  public FollowMode<T> setCost(float fixedCost, float followerCost, float costExponent) {
+    this.fixedCost = fixedCost;
+    this.followerCost = followerCost;
+    this.costExponent = costExponent;
+    sw = sx = sy = sxx = sxy = 0;
+    samples = 0;
+    return this;
+  }
+  
+  /** 
+   * Adds the measured update time of a follow of this mode with {@code followers}, 
+   * and fits the cost model once enough updates have been measured. <br>
+   * Only the fixed cost is fitted while all measures have about the same number of followers. 
+   * Must be called on the main thread.
+   */
+  public void sample(int followers, long nanos) {
+    if (!calibrate || followers <= 0) return;
+    double x = costExponent == 1f ? followers : Math.pow(followers, costExponent), y = nanos / 1000.0, 
+           keep = 1 - calibrationWeight;
+    sw = sw * keep + 1;
+    sx = sx * keep + x;
+    sy = sy * keep + y;
+    sxx = sxx * keep + x * x;
+    sxy = sxy * keep + x * y;
+    if (++samples < calibrationSamples) return;
+    
+    double variance = sw * sxx - sx * sx;
+    if (variance > 1e-6 * sw * sxx) followerCost = (float)Math.max(0, (sw * sxy - sx * sy) / variance);
+    fixedCost = (float)Math.max(0, (sy - followerCost * sx) / sw);
+  }
+  
+  /** @return the number of measured updates, since the creation or the last {@link #setCost(float, float, float)}. */
+  public long samples() {
+    return samples;
+  }
+  
+  /** @return the estimated cost of a follow of this mode with {@code followers}, in microseconds per update. */
+  public float cost(int followers) {
+    if (followers <= 0) return 0;
+    return fixedCost + followerCost * (costExponent == 1f ? followers : (float)Math.pow(followers, costExponent));
+  }
+  
+  /** 
+   * Consider using {@link FollowManager#add(FollowMode, Position)} instead, for a proper registration. <br>
+   * A previously {@link #free(Follow) freed} follow will be reused if available.
+   */
+  public <F extends Follow<T>> F create(T target, Accessor<T> accessor) {
+    synchronized (pool) {
+      if (!pool.isEmpty()) return (F)pool.pop().set(target, accessor);
+    }
+    return (F)constructor.get(target, accessor);
+  }
+  
+  /** 
+   * Resets the {@code follow} and keeps it for a future {@link #create(Position, Accessor)}. <br>
+   * The follow must not be used after that.
+   */
+  public void free(Follow<T> follow) {
+    if (!(follow instanceof AbstractFollow) || follow.getClass() != type) return;
+    AbstractFollow<T> f = (AbstractFollow<T>)follow;
+    f.reset();
+    synchronized (pool) {
+      if (pool.size < maxPooled && !pool.contains(f, true)) pool.add(f);
+    }
+  }
+  
+  /** Resets and keeps the {@code follow} in the pool of its mode, if any. */
+  public static <T extends Position> void freeFollow(Follow<T> follow) {
+    FollowMode<T> mode = of(follow);
+    if (mode != null) mode.free(follow);
   }
 
-  public static <T extends Position, F extends Follow<T>> FollowMode<T> 
-                add(String name, Class<F> type, Func<T, F> mode) {
-    FollowMode<T> m = new FollowMode<>(name, (Class<Follow<T>>)type, (Func<T, Follow<T>>)mode);
+  public static <T extends Position> FollowMode<T> 
+                add(String name, Class<?> type, Func2<T, Accessor<T>, ? extends Follow<T>> mode) {
+    FollowMode<T> m = new FollowMode<>(name, type, (Func2<T, Accessor<T>, Follow<T>>)mode);
     modes.put(name, m);
     modesTypes.put(type, m);
+    FollowMetrics.register(m);
     return m;
   }
 
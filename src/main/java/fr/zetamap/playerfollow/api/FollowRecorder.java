@@ -0,0 +1,239 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.ObjectIntMap;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+import arc.util.Log;
+
+
+/** 
+ * Records the inputs of a {@link FollowManager} in a compact binary trace, to replay them offline. <br>
+ * Each update writes the leaders state, at their extrapolated position, the followers sizes, the membership of follows when changed,
+ * and optionally the computed positions, to compare them when replaying. <br>
+ * Records are buffered and streamed to the file, so long traces don't use more memory.
+ * 
+ * @see fr.zetamap.playerfollow.FollowReplay
+ */
+public class FollowRecorder<T extends Position> {
+  public static final int MAGIC = 0x50465431; // PFT1
+  public static final byte ENTITY = 1, MODE = 2, TICK = 3, FOLLOW = 4, OUTPUT = 5;
+  
+  public final Path file;
+  /** Whether to also record computed positions. */
+  public boolean recordOutputs = true;
+  /** Ticks between two removals of the entities that left all follows. */
+  public static int pruneInterval = 60;
+  protected final FollowManager<T> manager;
+  protected final FileChannel channel;
+  protected final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+  /** Trace ids of entities and modes, defined the first time they are written. */
+  protected final ObjectIntMap<T> ids = new ObjectIntMap<>();
+  protected final ObjectIntMap<FollowMode<?>> modeIds = new ObjectIntMap<>();
+  /** Last tick where each entity has been recorded, to forget the ones that left all follows. */
+  protected final ObjectIntMap<T> seen = new ObjectIntMap<>();
+  /** Last recorded follow and membership of each leader, to only write the membership when changed. */
+  protected final ObjectMap<T, Follow<T>> lastFollows = new ObjectMap<>();
+  protected final ObjectIntMap<T> lastChanges = new ObjectIntMap<>();
+  protected final Vec2 position = new Vec2();
+  protected int tick, nextId;
+  protected long written;
+  protected boolean closeRequested, failed;
+  
+  public FollowRecorder(FollowManager<T> manager, Path file) throws IOException {
+    this.manager = manager;
+    this.file = file;
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+                                     StandardOpenOption.TRUNCATE_EXISTING);
+    buffer.putInt(MAGIC);
+  }
+  
+  /** Records the state of the follows about to be computed. Must be called while the manager is not updating. */
+  public void recordInputs() {
+    if (failed) return;
+    try {
+      ensure(5);
+      buffer.put(TICK).putInt(tick++);
+      
+      Seq<Follow<T>> follows = manager.forest.ordered;
+      for (int i=0; i<follows.size; i++) {
+        Follow<T> follow = follows.get(i);
+        T leader = follow.followed();
+        Seq<T> followers = follow.followers();
+        int leaderId = id(leader), modeId = modeId(FollowMode.of(follow));
+        for (int ii=0; ii<followers.size; ii++) id(followers.get(ii));
+        
+        boolean changed = lastFollows.get(leader) != follow || lastChanges.get(leader, -1) != follow.changes();
+        lastFollows.put(leader, follow);
+        lastChanges.put(leader, follow.changes());
+        
+        // Large follows can span several flushes
+        ensure(27);
+        buffer.put(FOLLOW).putInt(leaderId).putShort((short)modeId);
+        putEntity(leader, manager.motion.extrapolate(leader, position));
+        buffer.putInt(changed ? followers.size : -1);
+        if (changed) for (int ii=0; ii<followers.size; ii++) {
+          ensure(4);
+          buffer.putInt(ids.get(followers.get(ii), -1));
+        }
+        for (int ii=0; ii<followers.size; ii++) {
+          ensure(4);
+          buffer.putFloat(size(followers.get(ii)));
+        }
+      }
+      
+      if (tick % pruneInterval == 0) prune();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+  
+  /** 
+   * Records the computed positions, before they are separated, 
+   * as the replay only computes follows.
+   */
+  public void recordOutputs(Placements<T> placements) {
+    if (failed || !recordOutputs) return;
+    try {
+      for (int i=0, n=placements.size(); i<n; i++) {
+        ensure(13);
+        buffer.put(OUTPUT).putInt(ids.get(placements.followers.get(i), -1))
+              .putFloat(placements.xs.get(i)).putFloat(placements.ys.get(i));
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+  
+  /** The recorder will be closed by the manager, when not updating. */
+  public void requestClose() {
+    closeRequested = true;
+  }
+  
+  public boolean closeRequested() {
+    return closeRequested;
+  }
+  
+  /** @return the number of bytes written. */
+  public long written() {
+    return written + buffer.position();
+  }
+  
+  public void close() {
+    try {
+      flush();
+      channel.close();
+    } catch (IOException e) {
+      Log.err("[PlayerFollow] Failed to close the trace '" + file + "'", e);
+    }
+  }
+  
+  /** Writes the state of the {@code entity}, at the {@code position}. */
+  protected void putEntity(T entity, Vec2 position) {
+    Accessor<T> accessor = manager.accessor;
+    boolean dead = accessor.dead(entity);
+    buffer.putFloat(position.x).putFloat(position.y)
+          .putFloat(dead ? 0 : accessor.rotation(entity)).putFloat(size(entity));
+  }
+  
+  /** @return the hit size of the entity, or {@code -1} if dead. */
+  protected float size(T entity) {
+    return manager.accessor.dead(entity) ? -1f : manager.accessor.hitSize(entity);
+  }
+  
+  protected int id(T entity) throws IOException {
+    seen.put(entity, tick);
+    int id = ids.get(entity, -1);
+    if (id != -1) return id;
+    id = nextId++;
+    ids.put(entity, id);
+    writeDefinition(ENTITY, id, manager.followerToString.get(entity));
+    return id;
+  }
+  
+  /** 
+   * Forgets the entities not recorded at this tick, so removed entities are not kept. 
+   * They are defined again, with a new id, if they come back.
+   */
+  protected void prune() {
+    ObjectIntMap.Entries<T> entries = seen.entries();
+    while (entries.hasNext()) {
+      ObjectIntMap.Entry<T> e = entries.next();
+      if (e.value == tick) continue;
+      ids.remove(e.key, -1);
+      lastFollows.remove(e.key);
+      lastChanges.remove(e.key, -1);
+      entries.remove();
+    }
+  }
+  
+  protected int modeId(FollowMode<?> mode) throws IOException {
+    if (mode == null) return -1;
+    int id = modeIds.get(mode, -1);
+    if (id != -1) return id;
+    id = modeIds.size;
+    modeIds.put(mode, id);
+    writeDefinition(MODE, id, mode.name);
+    return id;
+  }
+  
+  protected void writeDefinition(byte type, int id, String name) throws IOException {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    ensure(7 + bytes.length);
+    buffer.put(type).putInt(id).putShort((short)bytes.length).put(bytes);
+  }
+  
+  /** Flushes the buffer if there is not enough remaining space for {@code bytes}. */
+  protected void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) flush();
+  }
+  
+  protected void flush() throws IOException {
+    buffer.flip();
+    written += buffer.remaining();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+  
+  protected void fail(IOException e) {
+    failed = true;
+    Log.err("[PlayerFollow] Failed to write the trace '" + file + "', recording stopped", e);
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import arc.func.Func;
+import arc.math.geom.Position;
+import arc.struct.ObjectIntMap;
+import arc.struct.ObjectMap;
+import arc.struct.ObjectSet;
+import arc.struct.Seq;
+import arc.util.Interval;
+import arc.util.Log;
+import arc.util.Time;
+
+
+/** 
+ * Compact binary snapshot of the follows of a {@link FollowManager}, to restore them after a restart. <br>
+ * The file is a log of records, keyed by {@link FollowManager#followerToString}. 
+ * Only follows that changed since the last write are appended, 
+ * and the file is compacted when it becomes too large compared to the live records. <br>
+ * When loading, only the record offsets and followers keys are indexed, 
+ * follows are restored lazily with {@link #restore(Position)} when their players come back. <br>
+ * The header holds the time of the last write. Follows that were still alive then only expire from this time, 
+ * as their unchanged records are not rewritten.
+ */
+public class FollowSnapshot<T extends Position> {
+  public static final int MAGIC = 0x50465332; // PFS2
+  public static final int HEADER = 12;
+  /** 
+   * Record types. A {@link #PUT} is a follow alive at the last write if not deleted after, 
+   * while a {@link #KEPT} is a waiting one, rewritten by a compaction. 
+   */
+  public static final byte PUT = 1, DELETE = 2, KEPT = 3;
+  /** Seconds between two snapshots. */
+  public static float interval = 60f;
+  /** Seconds after which a record that has not been restored is dropped. */
+  public static float expiry = 30 * 60f;
+  /** The file is compacted when it is this many times larger than the live records. */
+  public static float compactRatio = 2f;
+  
+  protected final FollowManager<T> manager;
+  /** Finds an online entity from its key, or returns {@code null}. */
+  protected final Func<String, T> resolver;
+  protected final Path file;
+  protected final Interval timer = new Interval();
+  /** Records waiting for their leader, by leader key. */
+  protected final ObjectMap<String, Record> pending = new ObjectMap<>();
+  /** Leader key of waiting followers, by follower key. */
+  protected final ObjectMap<String, String> pendingFollowers = new ObjectMap<>();
+  /** Checksum of the last written record of each follow, to only write the changed ones. */
+  protected final ObjectIntMap<String> written = new ObjectIntMap<>();
+  /** Size of the last written record of each follow. */
+  protected final ObjectIntMap<String> sizes = new ObjectIntMap<>();
+  /** Followers of the manager, indexed once per {@link #restore(Position)} instead of searching every follow. */
+  protected final ObjectSet<T> following = new ObjectSet<>();
+  protected boolean followingIndexed;
+  protected final CRC32 crc = new CRC32();
+  protected ByteBuffer buffer = ByteBuffer.allocate(4096);
+  protected long fileSize, liveSize;
+  
+  public FollowSnapshot(FollowManager<T> manager, Func<String, T> resolver, Path file) {
+    this.manager = manager;
+    this.resolver = resolver;
+    this.file = file;
+  }
+  
+  /** Writes the changes if the {@link #interval} elapsed. Must be called while the manager is not updating. */
+  public void update() {
+    if (timer.get(interval * 60f)) write();
+  }
+  
+  /** Loads the record index of the file. Follows are not restored here. */
+  public void load() {
+    pending.clear();
+    pendingFollowers.clear();
+    written.clear();
+    sizes.clear();
+    fileSize = liveSize = 0;
+    if (!Files.exists(file)) return;
+    
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // Read in a heap buffer instead of mapping the file, else the file cannot be replaced on some systems
+      ByteBuffer map = ByteBuffer.allocate((int)channel.size());
+      while (map.hasRemaining() && channel.read(map) >= 0);
+      map.flip();
+      if (map.remaining() < HEADER || map.getInt() != MAGIC) {
+        Log.warn("[PlayerFollow] Invalid follow snapshot file, ignoring it.");
+        return;
+      }
+      
+      long now = Time.millis(), lastWrite = map.getLong();
+      while (map.remaining() >= 4) {
+        int start = map.position(), length = map.getInt();
+        // Truncated record, because of a crash while writing
+        if (length <= 0 || map.remaining() < length) break;
+        
+        byte type = map.get();
+        long time = type == PUT ? Math.max(map.getLong(), lastWrite) : map.getLong();
+        String key = readString(map);
+        
+        if (type != DELETE && now - time < expiry * 1000) {
+          Record r = new Record();
+          r.mode = readString(map);
+          int count = map.getInt();
+          r.followers = new Seq<>(count);
+          for (int i=0; i<count; i++) r.followers.add(readString(map));
+          r.state = new byte[map.getInt()];
+          map.get(r.state);
+          // Keep the raw record for compaction
+          r.raw = new byte[length + 4];
+          map.position(start);
+          map.get(r.raw);
+          // Its expiry is now fixed, as the follow is no longer alive
+          ByteBuffer.wrap(r.raw).put(4, KEPT).putLong(5, time);
+          pending.put(key, r);
+        } else pending.remove(key);
+        
+        map.position(start + 4 + length);
+      }
+      // Waiting records must be rewritten as kept ones, so compact at the next write
+      fileSize = 0;
+    } catch (IOException | RuntimeException e) {
+      Log.err("[PlayerFollow] Failed to load the follow snapshot", e);
+    }
+    
+    pending.each((k, r) -> {
+      r.followers.each(f -> pendingFollowers.put(f, k));
+      liveSize += r.raw.length;
+    });
+    if (!pending.isEmpty()) Log.info("[PlayerFollow] @ follows waiting to be restored.", pending.size);
+  }
+  
+  /** 
+   * Restores the follow of the {@code entity}, and adds it to the follow of its previous leader, if any. <br>
+   * Must be called when the entity comes back, and while the manager is not updating.
+   */
+  public void restore(T entity) {
+    if (pending.isEmpty() && pendingFollowers.isEmpty()) return;
+    String key = manager.followerToString.get(entity);
+    followingIndexed = false;
+    restoreFollow(entity, key);
+    
+    String leaderKey = pendingFollowers.remove(key);
+    if (leaderKey != null) {
+      T leader = resolver.get(leaderKey);
+      // The follow of an online leader may have been waiting for its followers
+      Follow<T> follow = leader == null ? null : restoreFollow(leader, leaderKey);
+      if (follow != null && !isFollowing(entity)) follow.add(entity);
+      // Follow not restored yet, so keep waiting
+      else if (follow == null && pending.containsKey(leaderKey)) pendingFollowers.put(key, leaderKey);
+    }
+    // Don't keep references to the entities
+    following.clear();
+  }
+  
+  /** @return whether the {@code entity} follows someone. Followers are indexed at the first call of a restore. */
+  protected boolean isFollowing(T entity) {
+    if (!followingIndexed) {
+      following.clear();
+      for (Follow<T> f : manager.all.values()) following.addAll(f.followers());
+      followingIndexed = true;
+    }
+    return following.contains(entity);
+  }
+  
+  /** 
+   * Restores the waiting follow of the {@code entity}, if at least one of its followers is online. 
+   * Else the record keeps waiting, so the follow is never restored empty.
+   * 
+   * @return the follow of the {@code entity}, or {@code null} if none.
+   */
+  protected Follow<T> restoreFollow(T entity, String key) {
+    Follow<T> follow = manager.get(entity);
+    if (follow != null) {
+      pending.remove(key);
+      return follow;
+    }
+    Record record = pending.get(key);
+    if (record == null) return null;
+    FollowMode<T> mode = FollowMode.of(record.mode);
+    if (mode == null) {
+      pending.remove(key);
+      return null;
+    }
+    
+    Seq<T> followers = new Seq<>(record.followers.size);
+    record.followers.each(k -> {
+      T follower = resolver.get(k);
+      if (follower == null || follower == entity || isFollowing(follower)) return;
+      followers.add(follower);
+    });
+    if (followers.isEmpty()) return null;
+    
+    pending.remove(key);
+    followers.each(f -> pendingFollowers.remove(manager.followerToString.get(f)));
+    follow = manager.add(mode, entity);
+    follow.addAll(followers);
+    following.addAll(follow.followers());
+    
+    // Modes are checking the state consistency, in case of some followers are missing
+    if (follow instanceof AbstractFollow && record.state.length > 0) {
+      try { 
+        ((AbstractFollow<T>)follow).layout();
+        ((AbstractFollow<T>)follow).readState(ByteBuffer.wrap(record.state)); 
+      } 
+      catch (RuntimeException e) { Log.debug("[PlayerFollow] Invalid follow state of '@'", key); }
+    }
+    return follow;
+  }
+  
+  /** Appends changed follows and removed ones to the file. Must be called while the manager is not updating. */
+  public void write() {
+    try {
+      if (!Files.exists(file) || fileSize == 0) {
+        compact();
+        return;
+      }
+      
+      // Not opened in append mode, as the header is rewritten
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.position(fileSize);
+        ObjectSet<String> alive = new ObjectSet<>(manager.all.size);
+        
+        for (ObjectMap.Entry<T, Follow<T>> e : manager.all) {
+          String key = manager.followerToString.get(e.key);
+          alive.add(key);
+          int checksum = encode(key, e.value);
+          if (written.containsKey(key) && written.get(key, 0) == checksum) continue;
+          
+          appendRecord(channel, key, checksum);
+          // A new record replaces a waiting one
+          Record r = pending.remove(key);
+          if (r != null) liveSize -= r.raw.length;
+        }
+        
+        for (String key : written.keys().toArray()) {
+          if (alive.contains(key)) continue;
+          encodeDelete(key);
+          fileSize += buffer.limit();
+          channel.write(buffer);
+          liveSize -= sizes.remove(key, 0);
+          written.remove(key, 0);
+        }
+        
+        channel.write(header(), 0);
+      }
+      
+      if (fileSize > liveSize * compactRatio + buffer.capacity()) compact();
+    } catch (IOException | RuntimeException e) {
+      Log.err("[PlayerFollow] Failed to write the follow snapshot", e);
+    }
+  }
+  
+  /** Rewrites the whole file with only the live records, then atomically replaces the old one. */
+  public void compact() throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    written.clear();
+    sizes.clear();
+    fileSize = liveSize = 0;
+    
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, 
+                                                      StandardOpenOption.TRUNCATE_EXISTING)) {
+      channel.write(header());
+      fileSize = HEADER;
+      
+      for (ObjectMap.Entry<String, Record> e : pending) {
+        channel.write(ByteBuffer.wrap(e.value.raw));
+        fileSize += e.value.raw.length;
+        liveSize += e.value.raw.length;
+      }
+      for (ObjectMap.Entry<T, Follow<T>> e : manager.all) {
+        String key = manager.followerToString.get(e.key);
+        appendRecord(channel, key, encode(key, e.value));
+      }
+      channel.force(false);
+    }
+    
+    try { Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+    catch (AtomicMoveNotSupportedException e) { Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING); }
+  }
+  
+  /** @return the header of the file, with the current time as the last write. */
+  protected ByteBuffer header() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putLong(Time.millis());
+    header.flip();
+    return header;
+  }
+  
+  /** Writes the encoded record to the {@code channel}. */
+  protected void appendRecord(FileChannel channel, String key, int checksum) throws IOException {
+    int size = buffer.limit();
+    channel.write(buffer);
+    fileSize += size;
+    liveSize += size - sizes.get(key, 0);
+    sizes.put(key, size);
+    written.put(key, checksum);
+  }
+  
+  /** 
+   * Encodes a record of the {@code follow} in {@link #buffer}, ready to be written. 
+   * @return the checksum of the record, excluding the time.
+   */
+  protected int encode(String key, Follow<T> follow) {
+    while (true) {
+      try {
+        buffer.clear();
+        buffer.position(4);
+        buffer.put(PUT);
+        buffer.putLong(Time.millis());
+        int start = buffer.position();
+        
+        writeString(buffer, key);
+        FollowMode<T> mode = FollowMode.of(follow);
+        writeString(buffer, mode == null ? "" : mode.name);
+        Seq<T> followers = follow.followers();
+        buffer.putInt(followers.size);
+        for (int i=0; i<followers.size; i++) writeString(buffer, manager.followerToString.get(followers.get(i)));
+        
+        int stateStart = buffer.position();
+        buffer.putInt(0);
+        if (follow instanceof AbstractFollow) {
+          ((AbstractFollow<T>)follow).layout();
+          ((AbstractFollow<T>)follow).writeState(buffer);
+        }
+        buffer.putInt(stateStart, buffer.position() - stateStart - 4);
+        
+        buffer.putInt(0, buffer.position() - 4);
+        buffer.flip();
+        crc.reset();
+        crc.update(buffer.array(), start, buffer.limit() - start);
+        return (int)crc.getValue();
+      } catch (BufferOverflowException e) {
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+      }
+    }
+  }
+  
+  /** Encodes a removal record in {@link #buffer}, ready to be written. */
+  protected void encodeDelete(String key) {
+    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    if (buffer.capacity() < bytes.length + 15) buffer = ByteBuffer.allocate(bytes.length + 15);
+    buffer.clear();
+    buffer.putInt(bytes.length + 11);
+    buffer.put(DELETE);
+    buffer.putLong(Time.millis());
+    buffer.putShort((short)bytes.length);
+    buffer.put(bytes);
+    buffer.flip();
+  }
+  
+  
+  protected static void writeString(ByteBuffer buffer, String str) {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    buffer.putShort((short)bytes.length);
+    buffer.put(bytes);
+  }
+  
+  protected static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xffff];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+  
+  
+  /** A follow waiting to be restored. */
+  protected static class Record {
+    public String mode;
+    public Seq<String> followers;
+    /** Mode-specific state, see {@link AbstractFollow#writeState(ByteBuffer)}. */
+    public byte[] state;
+    /** The whole record, as written in the file. */
+    public byte[] raw;
+  }
+}
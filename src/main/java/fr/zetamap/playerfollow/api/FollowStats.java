@@ -0,0 +1,71 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/** 
+ * Counters of a {@link FollowManager}, exposed by {@link FollowMetrics}. <br>
+ * Counters are lock-free, so they can be updated from any thread, while being read by monitoring tools.
+ */
+public class FollowStats {
+  /** Sizes of the manager, updated at each sync point. */
+  public volatile int follows, followers;
+  public final LongAdder updates = new LongAdder(), updateNanos = new LongAdder(), 
+                         sent = new LongAdder(), suppressed = new LongAdder(), failed = new LongAdder();
+  /** Positions not computed because their follow was idle, they are not {@link #suppressed}. */
+  public final LongAdder idle = new LongAdder();
+  /** Time spent on the main thread at the sync points, to begin, capture and write back updates. */
+  public final LongAdder syncNanos = new LongAdder();
+  public final AtomicLong maxUpdateNanos = new AtomicLong();
+  
+  /** Records the duration of an update cycle. */
+  public void update(long nanos) {
+    updates.increment();
+    updateNanos.add(nanos);
+    maxUpdateNanos.accumulateAndGet(nanos, Math::max);
+  }
+  
+  /** Records time spent on the main thread. */
+  public void sync(long nanos) {
+    syncNanos.add(nanos);
+  }
+  
+  public void reset() {
+    updates.reset();
+    updateNanos.reset();
+    sent.reset();
+    suppressed.reset();
+    idle.reset();
+    syncNanos.reset();
+    failed.reset();
+    maxUpdateNanos.set(0);
+  }
+}
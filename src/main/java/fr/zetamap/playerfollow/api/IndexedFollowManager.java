@@ -0,0 +1,163 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import arc.func.Cons2;
+import arc.func.Func;
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.IntMap;
+import arc.struct.Seq;
+import arc.util.Time;
+
+
+/** 
+ * Follow manager indexing each follower by its {@link Accessor#id(Object) id}, 
+ * so changes stay cheap with thousands of followers. <br>
+ * Use {@link #follow(Position, Position, FollowMode)} or {@link #join(Position, Position, FollowMode)}, 
+ * and {@link #unfollow(Position)} to keep the index up to date. 
+ * Followers of removed and dropped follows are unindexed when their follow is freed. 
+ * Dead followers and follows of dead targets are removed periodically.
+ */
+public class IndexedFollowManager<T extends Position> extends FollowManager<T> {
+  /** Seconds between removals of dead entities. */
+  public static float sweepInterval = 1f;
+  
+  /** Followed entity of each follower, by id. */
+  protected final IntMap<T> leaders = new IntMap<>();
+  private final Seq<T> deadFollowers = new Seq<>(), deadLeaders = new Seq<>();
+  private float sweepTimer;
+  
+  public IndexedFollowManager(Accessor<T> accessor, Cons2<T, Vec2> notifier, Func<T, String> followerToString, 
+                              float updateIntervalTicks) {
+    super(accessor, notifier, followerToString, updateIntervalTicks);
+  }
+  
+  /** 
+   * Makes the {@code follower} follow the {@code target}, leaving its previous follow. 
+   * The {@code mode} is only used if the target is not already followed.
+   */
+  public <F extends Follow<T>> F follow(T follower, T target, FollowMode<T> mode) {
+    unfollow(follower);
+    F follow = get(target);
+    if (follow == null) follow = add(mode, target);
+    follow.add(follower);
+    leaders.put(accessor.id(follower), target);
+    return follow;
+  }
+  
+  /** @return whether the {@code follower} was following an entity. */
+  public boolean unfollow(T follower) {
+    T leader = leaders.remove(accessor.id(follower));
+    if (leader == null) return false;
+    Follow<T> follow = get(leader);
+    if (follow != null) follow.remove(follower);
+    return true;
+  }
+  
+  /** @return the entity followed by the {@code follower}, or {@code null}. */
+  public T leader(T follower) {
+    return leaders.get(accessor.id(follower));
+  }
+  
+  @Override
+  public Admission.Result join(T follower, T target, FollowMode<T> mode) {
+    Admission.Result result = super.join(follower, target, mode);
+    if (result.admitted()) leaders.put(accessor.id(follower), target);
+    return result;
+  }
+  
+  @Override
+  public void removeFollower(T follower) {
+    if (!unfollow(follower)) super.removeFollower(follower);
+  }
+  
+  @Override
+  public <F extends Follow<T>> F find(T follower) {
+    T leader = leaders.get(accessor.id(follower));
+    return leader != null ? get(leader) : super.find(follower);
+  }
+  
+  @Override
+  public <F extends Follow<T>> boolean remove(F follow) {
+    unindex(follow);
+    return super.remove(follow);
+  }
+  
+  @Override
+  public boolean remove(T target) {
+    Follow<T> follow = get(target);
+    if (follow != null) unindex(follow);
+    return super.remove(target);
+  }
+  
+  /** Removes the followers of the {@code follow} from the index. */
+  protected void unindex(Follow<T> follow) {
+    unindex(follow, null);
+  }
+  
+  /** Removes the followers of the {@code follow}, not kept by its replacement {@code by}, from the index. */
+  protected void unindex(Follow<T> follow, Follow<T> by) {
+    T target = follow.followed();
+    follow.followers().each(e -> {
+      int id = accessor.id(e);
+      if (leaders.get(id) == target && (by == null || !by.contains(e))) leaders.remove(id);
+    });
+  }
+  
+  /** 
+   * Also called for follows dropped after a failed update, or replaced by another one, 
+   * which are not removed through {@link #remove(Follow)}.
+   */
+  @Override
+  protected void free(Follow<T> last, Follow<T> by) {
+    if (last != null && last != by) unindex(last, by);
+    super.free(last, by);
+  }
+  
+  @Override
+  protected void begin() {
+    if ((sweepTimer += Time.delta) >= sweepInterval * 60) {
+      sweepTimer = 0;
+      sweep();
+    }
+    super.begin();
+  }
+  
+  /** Removes dead followers, and the follows of dead targets. Must be called while not updating. */
+  protected void sweep() {
+    deadFollowers.clear();
+    deadLeaders.clear();
+    all.each((target, follow) -> {
+      if (entities.source.dead(target)) deadLeaders.add(target);
+      else follow.followers().each(e -> entities.source.dead(e), deadFollowers::add);
+    });
+    
+    deadLeaders.each(this::remove);
+    deadFollowers.each(this::removeFollower);
+  }
+}
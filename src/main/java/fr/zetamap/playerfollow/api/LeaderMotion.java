@@ -0,0 +1,137 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+
+import mindustry.Vars;
+
+
+/** 
+ * Estimates the velocity of the leaders of a {@link FollowManager} from their captured positions, 
+ * to place followers around where the leader will be after {@link #leadMillis}, instead of where it was. <br>
+ * This compensates the update interval and the network latency, so groups don't trail behind fast leaders.
+ */
+public class LeaderMotion<T extends Position> {
+  /** Time to extrapolate leaders ahead, in milliseconds. {@code 0} disables the extrapolation. */
+  public float leadMillis = 60f;
+  /** Weight of the last update in the velocity estimate. */
+  public float smoothing = 0.5f;
+  /** Maximum extrapolated distance, in world units, so a wrong estimate never moves the group too far. */
+  public float maxLead = 4f * Vars.tilesize;
+  /** Leaders moving more than that between two updates are considered teleported, their velocity is reset. */
+  public float teleportDistance = 10f * Vars.tilesize;
+  
+  protected final FollowManager<T> manager;
+  /** Motion of the leaders, by target. Only changed on the main thread, while not computing. */
+  protected final ObjectMap<T, Motion> motions = new ObjectMap<>();
+  protected final Seq<T> temp = new Seq<>();
+  protected int cycle;
+  
+  public LeaderMotion(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  /** 
+   * Updates the velocity of the targets of {@code follows}, from the captured entities. 
+   * Must be called on the main thread, after capturing entities.
+   */
+  public void update(Seq<Follow<T>> follows) {
+    if (leadMillis <= 0) {
+      motions.clear();
+      return;
+    }
+    
+    Accessor<T> accessor = manager.accessor;
+    long now = System.nanoTime();
+    cycle++;
+    
+    for (int i=0; i<follows.size; i++) {
+      T target = follows.get(i).followed();
+      if (accessor.dead(target)) continue;
+      
+      float x = accessor.x(target), y = accessor.y(target);
+      Motion motion = motions.get(target);
+      if (motion == null) motions.put(target, motion = new Motion());
+      else if (motion.cycle == cycle) continue; // Already updated
+      else {
+        float dt = (now - motion.time) / 1e6f, dx = x - motion.x, dy = y - motion.y;
+        
+        if (dt <= 0 || dx * dx + dy * dy > teleportDistance * teleportDistance) motion.vx = motion.vy = 0;
+        else {
+          motion.vx += (dx / dt - motion.vx) * smoothing;
+          motion.vy += (dy / dt - motion.vy) * smoothing;
+          // Stop extrapolating when almost stopped, so idle follows can be detected
+          float lead = (float)Math.sqrt(motion.vx * motion.vx + motion.vy * motion.vy) * leadMillis;
+          if (lead < 0.1f) motion.vx = motion.vy = 0;
+        }
+      }
+      
+      motion.x = x;
+      motion.y = y;
+      motion.time = now;
+      motion.cycle = cycle;
+    }
+    
+    // Forget leaders not followed anymore, or dead
+    temp.clear();
+    motions.each((t, m) -> {
+      if (m.cycle != cycle) temp.add(t);
+    });
+    temp.each(motions::remove);
+  }
+  
+  /** 
+   * Gives the extrapolated position of the {@code target}, or its position if unknown. 
+   * Can be called from any thread while computing.
+   */
+  public Vec2 extrapolate(T target, Vec2 out) {
+    Accessor<T> accessor = manager.accessor;
+    out.set(accessor.x(target), accessor.y(target));
+    Motion motion = leadMillis <= 0 ? null : motions.get(target);
+    if (motion == null || (motion.vx == 0 && motion.vy == 0)) return out;
+    
+    float dx = motion.vx * leadMillis, dy = motion.vy * leadMillis, length = (float)Math.sqrt(dx * dx + dy * dy);
+    if (length > maxLead) {
+      dx *= maxLead / length;
+      dy *= maxLead / length;
+    }
+    return out.add(dx, dy);
+  }
+  
+  
+  /** Last position of a leader, and its velocity in world units per millisecond. */
+  protected static class Motion {
+    public float x, y, vx, vy;
+    public long time;
+    public int cycle;
+  }
+}
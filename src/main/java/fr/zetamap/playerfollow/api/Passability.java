@@ -0,0 +1,195 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.Arrays;
+
+import arc.Events;
+import arc.math.geom.Vec2;
+import arc.struct.IntSeq;
+
+import mindustry.Vars;
+import mindustry.game.EventType;
+import mindustry.world.Block;
+import mindustry.world.Tile;
+
+
+/** 
+ * Packed bitset of solid tiles of the world, to keep grounded followers off walls and buildings. <br>
+ * Built once per map and updated on tile changes, so it can be checked for every follower on every update. 
+ * Can be read from any thread, a new map swaps the whole grid.
+ */
+public class Passability {
+  /** Radius, in tiles, of the search for a free tile around a solid one. */
+  public static int searchRadius = 4;
+  
+  protected static volatile Grid grid;
+  /** Tile offsets within {@link #searchRadius}, sorted by distance. Packed as {@code dx, dy} pairs. */
+  private static volatile int[] offsets = new int[0];
+  private static int offsetsRadius = -1, maxBlockSize = 1;
+  private static boolean initialized;
+  
+  public static void init() {
+    if (initialized) return;
+    
+    Events.on(EventType.WorldLoadEvent.class, e -> rebuild());
+    Events.on(EventType.TileChangeEvent.class, e -> update(e.tile));
+    if (Vars.world != null && Vars.world.width() > 0) rebuild();
+    initialized = true;
+  }
+  
+  /** Rebuilds the grid from the whole world. Must be called from the main thread. */
+  public static void rebuild() {
+    int width = Vars.world.width(), height = Vars.world.height();
+    Grid next = new Grid(width, height);
+    for (int y=0; y<height; y++) {
+      for (int x=0; x<width; x++) {
+        if (isSolid(Vars.world.tile(x, y))) next.set(x, y);
+      }
+    }
+    
+    maxBlockSize = 1;
+    for (Block block : Vars.content.blocks()) maxBlockSize = Math.max(maxBlockSize, block.size);
+    grid = next;
+  }
+  
+  /** 
+   * Updates the tiles around a changed one. 
+   * The event is only fired for the center of multiblocks, so the area of the biggest block is updated.
+   */
+  public static void update(Tile tile) {
+    Grid grid = Passability.grid;
+    if (grid == null || tile == null) return;
+    
+    int radius = maxBlockSize / 2 + 1;
+    for (int y=tile.y-radius; y<=tile.y+radius; y++) {
+      for (int x=tile.x-radius; x<=tile.x+radius; x++) {
+        if (!grid.contains(x, y)) continue;
+        if (isSolid(Vars.world.tile(x, y))) grid.set(x, y);
+        else grid.clear(x, y);
+      }
+    }
+  }
+  
+  /** @return whether the world position is in a solid tile. Outside the world is solid. */
+  public static boolean solid(float x, float y) {
+    Grid grid = Passability.grid;
+    return grid != null && grid.get(toTile(x), toTile(y));
+  }
+  
+  /** 
+   * Moves the {@code position} to the center of the nearest free tile, if in a solid one. 
+   * The position is unchanged if the grid is not built or if no free tile is found within {@link #searchRadius}.
+   * 
+   * @return whether the position has been moved.
+   */
+  public static boolean free(Vec2 position) {
+    Grid grid = Passability.grid;
+    if (grid == null) return false;
+    int tx = toTile(position.x), ty = toTile(position.y);
+    if (!grid.get(tx, ty)) return false;
+    
+    int[] offsets = offsets();
+    for (int i=0; i<offsets.length; i+=2) {
+      int x = tx + offsets[i], y = ty + offsets[i+1];
+      if (grid.get(x, y)) continue;
+      position.set(x * Vars.tilesize, y * Vars.tilesize);
+      return true;
+    }
+    return false;
+  }
+  
+  protected static int toTile(float coord) {
+    return Math.round(coord / Vars.tilesize);
+  }
+  
+  protected static boolean isSolid(Tile tile) {
+    return tile == null || tile.solid();
+  }
+  
+  /** @return the offsets within the {@link #searchRadius}, rebuilt if it has changed. */
+  protected static int[] offsets() {
+    int radius = searchRadius;
+    if (radius == offsetsRadius) return offsets;
+    
+    IntSeq packed = new IntSeq();
+    for (int y=-radius; y<=radius; y++) {
+      for (int x=-radius; x<=radius; x++) {
+        if ((x != 0 || y != 0) && x * x + y * y <= radius * radius) packed.add(x * x + y * y, x, y);
+      }
+    }
+    
+    // Sort by distance, with a stable order for equal distances
+    Integer[] order = new Integer[packed.size / 3];
+    for (int i=0; i<order.length; i++) order[i] = i;
+    Arrays.sort(order, (a, b) -> Integer.compare(packed.get(a * 3), packed.get(b * 3)));
+    int[] result = new int[order.length * 2];
+    for (int i=0; i<order.length; i++) {
+      result[i * 2] = packed.get(order[i] * 3 + 1);
+      result[i * 2 + 1] = packed.get(order[i] * 3 + 2);
+    }
+    
+    offsets = result;
+    offsetsRadius = radius;
+    return result;
+  }
+  
+  
+  /** Bits of tiles, row by row. */
+  protected static class Grid {
+    final int width, height;
+    final long[] bits;
+    
+    Grid(int width, int height) {
+      this.width = width;
+      this.height = height;
+      bits = new long[(width * height + 63) >>> 6];
+    }
+    
+    boolean contains(int x, int y) {
+      return x >= 0 && y >= 0 && x < width && y < height;
+    }
+    
+    /** @return whether the tile is set. Outside the grid is set. */
+    boolean get(int x, int y) {
+      if (!contains(x, y)) return true;
+      int i = y * width + x;
+      return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+    
+    void set(int x, int y) {
+      int i = y * width + x;
+      bits[i >>> 6] |= 1L << i;
+    }
+    
+    void clear(int x, int y) {
+      int i = y * width + x;
+      bits[i >>> 6] &= ~(1L << i);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.util.Log;
+
+
+/** 
+ * Bulk math of the placement of followers, used by modes on whole arrays. <br>
+ * This is the scalar implementation. On Java 21+, when the {@code jdk.incubator.vector} module is enabled 
+ * (with {@code --add-modules jdk.incubator.vector}), the multi-release jar provides a vectorized one, 
+ * selected at runtime. Both do the same float operations, so they give identical results.
+ */
+public class PlacementKernels {
+  /** Kernels used by modes. */
+  public static final PlacementKernels instance = load();
+  
+  /** 
+   * Rotates the offsets from {@code from} (inclusive) to {@code to} (exclusive) by the angle of {@code cos} and {@code sin}. 
+   * Results are written at the same indices.
+   */
+  public void rotate(float[] xs, float[] ys, int from, int to, float cos, float sin, float[] outX, float[] outY) {
+    for (int i=from; i<to; i++) {
+      float x = xs[i], y = ys[i];
+      outX[i] = x * cos - y * sin;
+      outY[i] = x * sin + y * cos;
+    }
+  }
+  
+  /** 
+   * Linearly interpolates from sources to targets, by {@code alphas}, 
+   * from {@code from} (inclusive) to {@code to} (exclusive). Results are written at the same indices.
+   */
+  public void lerp(float[] sourcesX, float[] sourcesY, float[] targetsX, float[] targetsY, float[] alphas, 
+                   int from, int to, float[] outX, float[] outY) {
+    for (int i=from; i<to; i++) {
+      float alpha = alphas[i];
+      outX[i] = sourcesX[i] + (targetsX[i] - sourcesX[i]) * alpha;
+      outY[i] = sourcesY[i] + (targetsY[i] - sourcesY[i]) * alpha;
+    }
+  }
+  
+  public String name() {
+    return "scalar";
+  }
+  
+  /** Loads the vectorized kernels if available, else the scalar ones. */
+  protected static PlacementKernels load() {
+    try {
+      // Only in the Java 21 layer of the jar, and needs the incubator module
+      PlacementKernels kernels = (PlacementKernels)Class.forName("fr.zetamap.playerfollow.api.VectorKernels")
+                                                        .getDeclaredConstructor().newInstance();
+      Log.info("[PlayerFollow] Using @ placement kernels.", kernels.name());
+      return kernels;
+    } catch (Throwable e) {
+      return new PlacementKernels();
+    }
+  }
+}
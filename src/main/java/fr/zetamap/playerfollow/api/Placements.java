@@ -0,0 +1,121 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.FloatSeq;
+import arc.struct.LongSeq;
+import arc.struct.ObjectIntMap;
+import arc.struct.Seq;
+
+
+/** 
+ * Buffer of computed follower positions, before being applied. Entries are stored in parallel arrays. <br>
+ * A buffer must only be filled by one thread at a time.
+ */
+public class Placements<T extends Position> {
+  public final Seq<Follow<T>> follows = new Seq<>();
+  public final Seq<T> followers = new Seq<>();
+  public final FloatSeq xs = new FloatSeq(), ys = new FloatSeq(), sizes = new FloatSeq();
+  /** Entry index of each follower. */
+  public final ObjectIntMap<T> indices = new ObjectIntMap<>();
+  /** Targets of follows that failed to be computed. */
+  public final Seq<T> failed = new Seq<>();
+  /** Cost of each computed follow, in nanoseconds, for the {@link Watchdog}. */
+  public final Seq<Follow<T>> timed = new Seq<>();
+  public final LongSeq costs = new LongSeq();
+  
+  public void add(Follow<T> follow, T follower, Vec2 position) {
+    indices.put(follower, followers.size);
+    follows.add(follow);
+    followers.add(follower);
+    xs.add(position.x);
+    ys.add(position.y);
+    sizes.add(follow.hitSize(follower));
+  }
+  
+  /** Records the time spent computing the {@code follow}. */
+  public void time(Follow<T> follow, long nanos) {
+    timed.add(follow);
+    costs.add(nanos);
+  }
+  
+  /** Adds all entries, failures and costs of {@code other}. */
+  public void addAll(Placements<T> other) {
+    for (int i=0, n=other.size(); i<n; i++) indices.put(other.followers.get(i), followers.size + i);
+    follows.addAll(other.follows);
+    followers.addAll(other.followers);
+    xs.addAll(other.xs);
+    ys.addAll(other.ys);
+    sizes.addAll(other.sizes);
+    failed.addAll(other.failed);
+    timed.addAll(other.timed);
+    costs.addAll(other.costs);
+  }
+  
+  /** @return the entry index of the {@code follower}, or {@code -1}. */
+  public int indexOf(T follower) {
+    return indices.get(follower, -1);
+  }
+  
+  /** Gets the position of the entry {@code i}. */
+  public Vec2 get(int i, Vec2 out) {
+    return out.set(xs.get(i), ys.get(i));
+  }
+  
+  public void set(int i, float x, float y) {
+    xs.set(i, x);
+    ys.set(i, y);
+  }
+  
+  public int size() {
+    return followers.size;
+  }
+  
+  public boolean isEmpty() {
+    return followers.isEmpty();
+  }
+  
+  /** Removes the entries after {@code size}. */
+  public void truncate(int size) {
+    if (size >= followers.size) return;
+    for (int i=size; i<followers.size; i++) indices.remove(followers.get(i), -1);
+    follows.truncate(size);
+    followers.truncate(size);
+    xs.size = ys.size = sizes.size = size;
+  }
+  
+  public void clear() {
+    truncate(0);
+    indices.clear();
+    failed.clear();
+    timed.clear();
+    costs.clear();
+  }
+}
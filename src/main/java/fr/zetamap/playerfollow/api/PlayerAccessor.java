@@ -3,7 +3,7 @@
  *
  * MIT License
  *
- * Copyright (c) 2024-2025 ZetaMap
+ * Copyright (c) 2025 ZetaMap
  *
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
@@ -24,45 +24,49 @@
  * SOFTWARE.
  */
 
+
 package fr.zetamap.playerfollow.api;
 
 import arc.math.geom.Vec2;
-import fr.zetamap.playerfollow.Players;
-import mindustry.Vars;
-import mindustry.gen.Player;
 
+import mindustry.gen.Player;
 
-public abstract class AbstractPlayerFollow extends AbstractFollow<Player> {
-  public static float SCALE = Vars.tilesize;
 
-  public AbstractPlayerFollow(Player target) {
-    super(target);
+/** {@link Accessor} of players, through their unit. */
+public class PlayerAccessor implements Accessor<Player> {
+  public static final PlayerAccessor instance = new PlayerAccessor();
+  
+  @Override
+  public boolean dead(Player player) {
+    return player.dead();
   }
 
-  /** Send a message to followers */
-  public void message(String message, Object... args) {
-    message(Players::warn, message, args);
+  @Override
+  public float rotation(Player player) {
+    return player.unit().rotation;
   }
-  
-  /** Send a message to followers */
-  public void message(arc.func.Cons3<Player, String, Object[]> sender, String message, Object... args) {
-    followers.each(p -> sender.get(p, message, args));
+
+  @Override
+  public float hitSize(Player player) {
+    return player.unit().hitSize;
   }
 
   @Override
-  protected boolean cannotUpdate(Player player) {
-    return player.dead();
+  public boolean grounded(Player player) {
+    return !player.dead() && UnitAccessor.instance.grounded(player.unit());
   }
 
   @Override
-  protected void setPosition(Player player, Vec2 target) {
-    player.unit().set(target);
-    player.set(target);
-    player.snapInterpolation();
+  public int id(Player player) {
+    return player.id;
   }
 
-  /** Gets the size of the player */
-  protected float hitSize(Player player) {
-    return cannotUpdate(player) ? 1f : Math.max(1f, player.unit().hitSize / 2f);
+  /** Only snapped for long moves, see {@link UnitAccessor#snapDistance}. */
+  @Override
+  public void setPosition(Player player, Vec2 position) {
+    boolean snap = !player.within(position, UnitAccessor.snapDistance);
+    player.unit().set(position);
+    player.set(position);
+    if (snap) player.snapInterpolation();
   }
 }
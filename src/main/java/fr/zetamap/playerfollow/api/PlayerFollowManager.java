@@ -26,15 +26,20 @@
 
 package fr.zetamap.playerfollow.api;
 
+import mindustry.Vars;
 import mindustry.gen.Call;
 import mindustry.gen.Player;
 
+import fr.zetamap.playerfollow.PlayerIndex;
+
 
 public class PlayerFollowManager extends FollowManager<Player> {
   private static PlayerFollowManager instance;
   
   protected PlayerFollowManager() {
-    super((f, o) -> Call.setPosition(f.con, o.x, o.y), f -> f.uuid(), 60 / 30); // 30 fps
+    super(PlayerAccessor.instance, (f, o) -> Call.setPosition(f.con, o.x, o.y), f -> f.uuid(), 60 / 30); // 30 fps
+    snapshot = new FollowSnapshot<>(this, PlayerIndex::findByUUID, 
+                                    Vars.modDirectory.child("player-follow").child("follows.bin").file().toPath());
   }
   
   public static PlayerFollowManager instance() {
@@ -0,0 +1,229 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import arc.func.Cons;
+import arc.math.geom.Position;
+import arc.util.Log;
+
+
+/** 
+ * Stream of the positions applied by a {@link FollowManager}, for other plugins. <br>
+ * At each update, subscribers receive one {@link Batch} with the id and the new position of every moved follower. 
+ * Batches are delivered by the executor of each subscriber. A subscriber still busy with a batch 
+ * only gets the latest one when done, the batches in between are dropped, so it never stalls the updates.
+ */
+public class PositionStream<T extends Position> {
+  private static ExecutorService defaultExecutor;
+  
+  protected final FollowManager<T> manager;
+  protected final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  /** Released batches, to reuse them. */
+  protected final ConcurrentLinkedQueue<Batch> pool = new ConcurrentLinkedQueue<>();
+  protected long sequence;
+  
+  public PositionStream(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  /** Subscribes the {@code listener}, called in a shared daemon thread pool. */
+  public Subscription subscribe(Cons<Batch> listener) {
+    return subscribe(listener, defaultExecutor());
+  }
+  
+  /** 
+   * Subscribes the {@code listener}, called by the {@code executor}, never concurrently. <br>
+   * A direct executor ({@code Runnable::run}) calls it on the main thread, while updating, so it must be fast.
+   */
+  public Subscription subscribe(Cons<Batch> listener, Executor executor) {
+    Subscription subscription = new Subscription(listener, executor);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+  
+  public boolean hasSubscribers() {
+    return !subscriptions.isEmpty();
+  }
+  
+  /** Publishes the positions of {@code placements} to subscribers. Must be called on the main thread. */
+  public void publish(Placements<T> placements) {
+    if (subscriptions.isEmpty()) return;
+    
+    Batch batch = pool.poll();
+    if (batch == null) batch = new Batch();
+    int n = placements.size();
+    batch.ensure(n);
+    for (int i=0; i<n; i++) {
+      batch.ids[i] = manager.accessor.id(placements.followers.get(i));
+      batch.xs[i] = placements.xs.get(i);
+      batch.ys[i] = placements.ys.get(i);
+    }
+    batch.size = n;
+    batch.sequence = sequence++;
+    batch.refs.set(1);
+    
+    for (Subscription subscription : subscriptions) subscription.offer(batch);
+    // Reused once released by all subscribers
+    batch.release();
+  }
+  
+  /** Cancels all subscriptions. */
+  public void clear() {
+    for (Subscription subscription : subscriptions) subscription.cancel();
+  }
+  
+  protected static synchronized ExecutorService defaultExecutor() {
+    if (defaultExecutor == null) {
+      AtomicInteger count = new AtomicInteger();
+      defaultExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "PlayerFollow-Stream-" + count.getAndIncrement());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return defaultExecutor;
+  }
+  
+  
+  /** 
+   * Positions of followers applied in an update. Read-only, and reused once released, 
+   * so listeners must copy what they need before returning.
+   */
+  public class Batch {
+    protected int[] ids = new int[16];
+    protected float[] xs = new float[16], ys = new float[16];
+    protected int size;
+    protected long sequence;
+    protected final AtomicInteger refs = new AtomicInteger();
+    
+    /** @return the number of followers in this batch. */
+    public int size() { return size; }
+    /** @return the index of the update, to detect dropped batches. */
+    public long sequence() { return sequence; }
+    /** @return the id of the follower {@code i}, see {@link Accessor#id(Position)}. */
+    public int id(int i) { return ids[i]; }
+    /** @return the new position of the follower {@code i}. */
+    public float x(int i) { return xs[i]; }
+    public float y(int i) { return ys[i]; }
+    
+    protected void ensure(int capacity) {
+      if (capacity <= ids.length) return;
+      capacity = Math.max(capacity, ids.length * 2);
+      ids = Arrays.copyOf(ids, capacity);
+      xs = Arrays.copyOf(xs, capacity);
+      ys = Arrays.copyOf(ys, capacity);
+    }
+    
+    protected void retain() {
+      refs.incrementAndGet();
+    }
+    
+    protected void release() {
+      if (refs.decrementAndGet() == 0) pool.offer(this);
+    }
+  }
+  
+  
+  /** Subscription of a listener, keeping only the latest undelivered batch. */
+  public class Subscription {
+    public final Cons<Batch> listener;
+    public final Executor executor;
+    /** Number of batches delivered, and dropped because the listener was still busy. */
+    public final AtomicLong delivered = new AtomicLong(), dropped = new AtomicLong();
+    protected final AtomicReference<Batch> pending = new AtomicReference<>();
+    protected final AtomicBoolean scheduled = new AtomicBoolean();
+    protected volatile boolean cancelled;
+    
+    protected Subscription(Cons<Batch> listener, Executor executor) {
+      this.listener = listener;
+      this.executor = executor;
+    }
+    
+    /** Replaces the pending batch, if any, and schedules the delivery. */
+    protected void offer(Batch batch) {
+      if (cancelled) return;
+      batch.retain();
+      Batch last = pending.getAndSet(batch);
+      if (last != null) {
+        dropped.incrementAndGet();
+        last.release();
+      }
+      schedule();
+    }
+    
+    protected void schedule() {
+      if (!scheduled.compareAndSet(false, true)) return;
+      try { executor.execute(this::drain); } 
+      catch (RejectedExecutionException e) {
+        Log.err("[PlayerFollow] Position subscriber rejected a batch, subscription cancelled.", e);
+        scheduled.set(false);
+        cancel();
+      }
+    }
+    
+    protected void drain() {
+      try {
+        Batch batch;
+        while (!cancelled && (batch = pending.getAndSet(null)) != null) {
+          try { 
+            listener.get(batch); 
+            delivered.incrementAndGet();
+          } catch (Throwable e) { 
+            Log.err("[PlayerFollow] Position subscriber failed", e); 
+          } finally { 
+            batch.release(); 
+          }
+        }
+      } finally {
+        scheduled.set(false);
+      }
+      // A batch can have been offered after the last check, but before the schedule flag was cleared
+      if (!cancelled && pending.get() != null) schedule();
+    }
+    
+    /** Stops receiving batches. */
+    public void cancel() {
+      cancelled = true;
+      subscriptions.remove(this);
+      Batch batch = pending.getAndSet(null);
+      if (batch != null) batch.release();
+    }
+  }
+}
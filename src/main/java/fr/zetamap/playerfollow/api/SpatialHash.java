@@ -0,0 +1,92 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.Arrays;
+
+import arc.math.Mathf;
+import arc.struct.FloatSeq;
+import arc.struct.IntSeq;
+
+
+/** 
+ * Uniform spatial hash of points, rebuilt in linear time. <br>
+ * Cells are hashed in a table sized according to the number of points, 
+ * so the memory does not depend on the size of the world.
+ */
+public class SpatialHash {
+  public float cellSize = 1f;
+  /** First point of each bucket, and next point of the same bucket, or {@code -1}. */
+  protected int[] heads = new int[16], next = new int[16];
+  protected int mask = heads.length-1;
+  protected FloatSeq xs, ys;
+  
+  /** Rebuilds the hash with these points. Arrays are not copied. */
+  public void build(FloatSeq xs, FloatSeq ys, float cellSize) {
+    this.xs = xs;
+    this.ys = ys;
+    this.cellSize = Math.max(1f, cellSize);
+    
+    int size = xs.size, capacity = Mathf.nextPowerOfTwo(Math.max(16, size * 2));
+    if (heads.length != capacity) {
+      heads = new int[capacity];
+      mask = capacity-1;
+    }
+    if (next.length < size) next = new int[capacity];
+    Arrays.fill(heads, -1);
+    
+    for (int i=0; i<size; i++) {
+      int bucket = bucket(cell(xs.get(i)), cell(ys.get(i)));
+      next[i] = heads[bucket];
+      heads[bucket] = i;
+    }
+  }
+  
+  /** 
+   * Fills {@code out} with every point in the 3x3 cells around ({@code x}, {@code y}). <br>
+   * Points of other cells sharing a bucket can also be given, even several times, so distances must be checked.
+   */
+  public IntSeq nearby(float x, float y, IntSeq out) {
+    int cx = cell(x), cy = cell(y);
+    out.clear();
+    for (int dx=-1; dx<=1; dx++) {
+      for (int dy=-1; dy<=1; dy++) {
+        for (int i=heads[bucket(cx+dx, cy+dy)]; i != -1; i=next[i]) out.add(i);
+      }
+    }
+    return out;
+  }
+  
+  protected int cell(float v) {
+    return (int)Math.floor(v / cellSize);
+  }
+  
+  protected int bucket(int cx, int cy) {
+    return (cx * 73856093 ^ cy * 19349663) & mask;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import arc.func.Cons2;
+import arc.math.geom.Position;
+import arc.math.geom.Vec2;
+import arc.struct.FloatSeq;
+import arc.struct.IntSeq;
+import arc.struct.Seq;
+
+
+/** 
+ * Follow whose followers can be placed independently of each others, 
+ * so the placement of large follows is split across the {@link FollowManager.Updater#splitter}. <br>
+ * The bulk math of the placement is done by {@link #prepareRange(int, int, int, int)}, 
+ * for all followers when placed sequentially, or by each range when split.
+ */
+public abstract class SplittableFollow<T extends Position> extends AbstractFollow<T> {
+  /** Minimum followers to split the placement. */
+  public static int splitThreshold = 128;
+  /** Minimum followers placed by each split task. */
+  public static int splitChunk = 32;
+  
+  /** Buffers of a split placement. Ranks are {@code -1} for followers that cannot be updated. */
+  protected final IntSeq ranks = new IntSeq();
+  protected final FloatSeq placedX = new FloatSeq(), placedY = new FloatSeq();
+  protected final Seq<Future<?>> splits = new Seq<>();
+  
+  public SplittableFollow(T target, Accessor<T> accessor) {
+    super(target, accessor);
+  }
+  
+  @Override
+  boolean split(Cons2<T, Vec2> out) {
+    ForkJoinPool splitter = FollowManager.Updater.splitter;
+    if (splitter == null || followers.size < splitThreshold) {
+      // Ranks are not known without checking each followers, they are bounded by the size
+      prepareRange(0, followers.size, 0, followers.size);
+      return false;
+    }
+    computeSplit(splitter, out);
+    return true;
+  }
+  
+  /** 
+   * Places followers by ranges in the {@code splitter}, then gives positions in the followers order. <br>
+   * Each position is computed by {@link #place(Vec2, int, int, Position)} with the same operations 
+   * as the sequential path, so results are identical.
+   */
+  protected void computeSplit(ForkJoinPool splitter, Cons2<T, Vec2> out) {
+    int n = followers.size, rank = 0;
+    ranks.setSize(n);
+    placedX.setSize(n);
+    placedY.setSize(n);
+    for (int i=0; i<n; i++) ranks.set(i, cannotUpdate(followers.get(i)) ? -1 : rank++);
+    suppressed(n - rank);
+    prepareSplit();
+    
+    int tasks = Math.max(1, Math.min(splitter.getParallelism() + 1, n / Math.max(1, splitChunk))),
+        perTask = (n + tasks - 1) / tasks;
+    int from = 0;
+    splits.clear();
+    for (; from+perTask<n; from+=perTask) {
+      int f = from, to = from + perTask;
+      try { splits.add(splitter.submit(() -> placeRange(f, to))); }
+      catch (RejectedExecutionException e) { placeRange(f, to); } // The splitter has been shut down
+    }
+    // The last range is placed by this thread
+    placeRange(from, n);
+    
+    // Wait for all ranges before using the buffers, even if one failed
+    Throwable error = null;
+    for (int i=0; i<splits.size; i++) {
+      try { splits.get(i).get(); } 
+      catch (ExecutionException e) { error = e.getCause(); }
+      catch (InterruptedException e) { 
+        error = e; 
+        Thread.currentThread().interrupt();
+      }
+    }
+    splits.clear();
+    if (error != null) throw new RuntimeException("Failed to place followers", error);
+    
+    for (int i=0; i<n; i++) {
+      if (ranks.get(i) == -1) continue;
+      out.get(followers.get(i), target.set(placedX.get(i), placedY.get(i)));
+    }
+  }
+  
+  protected void placeRange(int from, int to) {
+    int fromRank = -1, toRank = -1;
+    for (int i=from; i<to; i++) {
+      if (ranks.get(i) == -1) continue;
+      if (fromRank == -1) fromRank = ranks.get(i);
+      toRank = ranks.get(i) + 1;
+    }
+    if (fromRank == -1) return;
+    prepareRange(from, to, fromRank, toRank);
+    
+    Vec2 position = new Vec2();
+    for (int i=from; i<to; i++) {
+      int rank = ranks.get(i);
+      if (rank == -1) continue;
+      place(position.set(leader), i, rank, followers.get(i));
+      placedX.set(i, position.x);
+      placedY.set(i, position.y);
+    }
+  }
+  
+  /** Can be overridden to prepare a split placement, sequentially, after {@link #preUpdate()}. */
+  protected void prepareSplit() {}
+  
+  /** 
+   * Prepares the placement of the followers from {@code from} (inclusive) to {@code to} (exclusive), 
+   * whose ranks are from {@code fromRank} (inclusive) to {@code toRank} (exclusive). <br>
+   * Called after {@link #preUpdate()}, and concurrently for disjoint ranges when split.
+   */
+  protected abstract void prepareRange(int from, int to, int fromRank, int toRank);
+  
+  /** 
+   * Places a follower independently of the others, possibly in another thread. 
+   * Must give the same result as {@link #update(Vec2, int, Position)} for this follower.
+   * 
+   * @param out the follower's new position, starting from the {@link #leader} position.
+   * @param index the {@link #followers} index.
+   * @param rank the index of the follower among the ones that can be updated.
+   * @param follower the follower to place.
+   */
+  protected abstract void place(Vec2 out, int index, int rank, T follower);
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.math.geom.Vec2;
+
+import mindustry.Vars;
+import mindustry.gen.Unit;
+
+
+/** {@link Accessor} of units. */
+public class UnitAccessor implements Accessor<Unit> {
+  public static final UnitAccessor instance = new UnitAccessor();
+  /** 
+   * Moves longer than that are snapped, without interpolation. 
+   * Shorter ones are interpolated, so clients see followers move smoothly between updates.
+   */
+  public static float snapDistance = 4f * Vars.tilesize;
+  
+  @Override
+  public boolean dead(Unit unit) {
+    return !unit.isValid();
+  }
+
+  @Override
+  public float rotation(Unit unit) {
+    return unit.rotation;
+  }
+
+  @Override
+  public float hitSize(Unit unit) {
+    return unit.hitSize;
+  }
+
+  /** Legged units can step over walls. */
+  @Override
+  public boolean grounded(Unit unit) {
+    return unit.isGrounded() && !unit.type.allowLegStep;
+  }
+
+  @Override
+  public int id(Unit unit) {
+    return unit.id;
+  }
+
+  @Override
+  public void setPosition(Unit unit, Vec2 position) {
+    boolean snap = !unit.within(position, snapDistance);
+    unit.set(position);
+    if (snap) unit.snapInterpolation();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import mindustry.gen.Unit;
+
+
+/** 
+ * Follow manager of units, e.g. escort waves following a commander. <br>
+ * Units are synced by the server, so positions are written in one batch at the end sync point, 
+ * without any network call. <br>
+ * Following units are indexed by their id, see {@link IndexedFollowManager}.
+ */
+public class UnitFollowManager extends IndexedFollowManager<Unit> {
+  private static UnitFollowManager instance;
+  
+  protected UnitFollowManager() {
+    // Units are synced by the server, so there is nothing to notify
+    super(UnitAccessor.instance, (f, o) -> {}, f -> "#" + f.id, 60 / 30); // 30 fps
+  }
+  
+  public static UnitFollowManager instance() {
+    if (instance == null) instance = new UnitFollowManager();
+    return instance;
+  }
+}
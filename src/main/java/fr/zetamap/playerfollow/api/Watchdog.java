@@ -0,0 +1,177 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import arc.func.Cons;
+import arc.math.geom.Position;
+import arc.struct.ObjectMap;
+import arc.struct.Seq;
+import arc.util.Log;
+
+
+/** 
+ * Watchdog of the cost of each follow of a {@link FollowManager}. <br>
+ * Unlike the {@link Degradation}, which reacts to the total cost of updates, this isolates pathological follows:
+ * a follow costing more than {@link #threshold} during {@link #holdUpdates} updates is quarantined, 
+ * and updated only once every {@link #divider} updates. 
+ * It is released once its cost stays below a fraction {@link #release} of the threshold.
+ */
+public class Watchdog<T extends Position> {
+  public boolean enabled = true;
+  /** Cost of a single follow above which it is quarantined, in milliseconds. */
+  public float threshold = 1f;
+  /** Fraction of the threshold below which a quarantined follow is released. */
+  public float release = 0.5f;
+  /** Updates of a follow that must stay above or below the limits before changing its tier. */
+  public int holdUpdates = 10;
+  /** Weight of the last update in the average cost of a follow. */
+  public float smoothing = 0.3f;
+  /** Quarantined follows are updated once every {@code divider} updates. */
+  public int divider = 4;
+  /** Called on the main thread when a follow is quarantined or released, to notify players. */
+  public Cons<Follow<T>> quarantined, released;
+  
+  protected final FollowManager<T> manager;
+  /** Cost of follows, by target. Only changed on the main thread, while not computing. */
+  protected final ObjectMap<T, Cost<T>> costs = new ObjectMap<>();
+  protected final Seq<T> temp = new Seq<>();
+  protected int cycle;
+  
+  public Watchdog(FollowManager<T> manager) {
+    this.manager = manager;
+  }
+  
+  /** @return whether the {@code follow} is quarantined and must be skipped in this update. */
+  public boolean skip(Follow<T> follow, int index) {
+    Cost<T> cost = costs.get(follow.followed());
+    return cost != null && cost.quarantined && cost.follow == follow && (cycle + index) % Math.max(1, divider) != 0;
+  }
+  
+  /** @return whether the {@code follow} is quarantined. */
+  public boolean quarantined(Follow<T> follow) {
+    Cost<T> cost = costs.get(follow.followed());
+    return cost != null && cost.quarantined && cost.follow == follow;
+  }
+  
+  /** Updates the costs with the follows computed in {@code placements}. Must be called on the main thread. */
+  public void check(Placements<T> placements) {
+    cycle++;
+    if (!enabled) {
+      if (!costs.isEmpty()) releaseAll();
+      return;
+    }
+    
+    for (int i=0; i<placements.timed.size; i++) {
+      Follow<T> follow = placements.timed.get(i);
+      float ms = placements.costs.get(i) / 1e6f;
+      Cost<T> cost = costs.get(follow.followed());
+      
+      // The target can have a new follow, after a mode change or a reuse
+      if (cost == null || cost.follow != follow) {
+        if (cost != null && cost.quarantined) notify(cost.follow, false);
+        costs.put(follow.followed(), cost = new Cost<>(follow));
+        cost.average = ms;
+      } else cost.average += (ms - cost.average) * smoothing;
+      
+      if (!cost.quarantined) {
+        cost.under = 0;
+        if (cost.average <= threshold) cost.over = 0;
+        else if (++cost.over >= holdUpdates) setQuarantined(cost, true);
+      } else {
+        cost.over = 0;
+        if (cost.average >= threshold * release) cost.under = 0;
+        else if (++cost.under >= holdUpdates) setQuarantined(cost, false);
+      }
+    }
+    
+    // Forget removed follows, from time to time
+    if (cycle % 60 == 0) {
+      temp.clear();
+      costs.each((t, c) -> {
+        if (manager.get(t) != c.follow) temp.add(t);
+      });
+      temp.each(costs::remove);
+    }
+  }
+  
+  protected void setQuarantined(Cost<T> cost, boolean quarantined) {
+    cost.quarantined = quarantined;
+    cost.over = cost.under = 0;
+    notify(cost.follow, quarantined);
+  }
+  
+  protected void notify(Follow<T> follow, boolean quarantined) {
+    String target = manager.followerToString.get(follow.followed());
+    manager.events.record(quarantined ? FollowEvents.Type.QUARANTINED : FollowEvents.Type.RELEASED, 
+                          follow.followed(), null, follow.followers().size);
+    if (quarantined) Log.warn("[PlayerFollow] Follow of '@' quarantined, updates are too slow.", target);
+    else Log.info("[PlayerFollow] Follow of '@' released from quarantine.", target);
+    
+    Cons<Follow<T>> listener = quarantined ? this.quarantined : released;
+    if (listener != null) listener.get(follow);
+  }
+  
+  /** 
+   * Forgets the cost of the {@code follow}, when it is freed. 
+   * Else a pooled follow reused for the same target would still be quarantined.
+   */
+  public void forget(Follow<T> follow) {
+    Cost<T> cost = costs.get(follow.followed());
+    if (cost != null && cost.follow == follow) costs.remove(follow.followed());
+  }
+  
+  /** Releases all quarantined follows, and forgets costs. */
+  public void releaseAll() {
+    costs.each((t, c) -> {
+      if (c.quarantined && manager.get(t) == c.follow) notify(c.follow, false);
+    });
+    costs.clear();
+  }
+  
+  /** @return the number of quarantined follows. */
+  public int size() {
+    int count = 0;
+    for (Cost<T> cost : costs.values()) {
+      if (cost.quarantined) count++;
+    }
+    return count;
+  }
+  
+  
+  /** Average cost of a follow, in milliseconds, and its tier. */
+  protected static class Cost<T extends Position> {
+    public final Follow<T> follow;
+    public float average;
+    public int over, under;
+    public boolean quarantined;
+    
+    public Cost(Follow<T> follow) {
+      this.follow = follow;
+    }
+  }
+}
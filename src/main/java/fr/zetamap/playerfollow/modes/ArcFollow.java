@@ -27,78 +27,127 @@
 package fr.zetamap.playerfollow.modes;
 
 import arc.math.Mathf;
+import arc.math.geom.Position;
 import arc.math.geom.Vec2;
 import arc.struct.FloatSeq;
 import arc.struct.Seq;
 import arc.util.pooling.Pool;
-import arc.util.pooling.Pools;
 
-import mindustry.gen.Player;
+import fr.zetamap.playerfollow.api.Accessor;
+import fr.zetamap.playerfollow.api.FollowConfig;
+import fr.zetamap.playerfollow.api.PlacementKernels;
+import fr.zetamap.playerfollow.api.SplittableFollow;
 
 
-public class ArcFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow {
-  /** Radius between rings */
-  public static float ringGap = 3f * SCALE;
-  /** Spacing between players */
-  public static float playerSpacing = 2f * SCALE;
-  /** Max angle for each side, at back of the leader */
-  public static float maxSidesAngle = 90f * Mathf.degRad;
+public class ArcFollow<T extends Position> extends SplittableFollow<T> {
+  /** Config shared by all arc follows without their own config. */
+  public static final Config defaults = new Config();
 
   public Seq<Ring> rings = new Seq<>();
+  /** The config of this follow, use {@link #customize()} to change only this follow. */
+  public Config config = defaults;
   
-  private int ringI = 0, followerI = 0;
-  private float gap = ringGap, spacing = playerSpacing, totalHitSize = 0, maxAngle = maxSidesAngle;
+  private int slotI = 0, offsetsEpoch = -1, configVersion = config.version();
+  private float gap = config.ringGap, spacing = config.playerSpacing, totalHitSize = 0, maxAngle = config.maxSidesAngle,
+                cos, sin;
   private final FloatSeq toAdd = new FloatSeq(), chords = new FloatSeq();
-  private final Pool<Ring> ringPool = Pools.get(Ring.class, Ring::new);
+  /** Offsets of the slots of all rings, relative to the leader, without and with its rotation. */
+  private final FloatSeq offsetsX = new FloatSeq(), offsetsY = new FloatSeq(), slotsX = new FloatSeq(), slotsY = new FloatSeq();
+  private final Pool<Ring> ringPool = pool(Ring::new);
 
-  public ArcFollow(Player target) {
-    super(target);
+  public ArcFollow(T target, Accessor<T> accessor) {
+    super(target, accessor);
   }
   
   @Override
-  protected void addImpl(Player player) {
+  protected void addImpl(T player) {
     totalHitSize += hitSize(player);
-    adaptRings();
   }
   
   @Override
-  protected void addAllImpl(Seq<Player> followers) {
+  protected void addAllImpl(Seq<T> followers) {
     totalHitSize += followers.sumf(this::hitSize);
-    adaptRings();
   }
 
   @Override
-  protected void removeImpl(Player player) {
+  protected void removeImpl(T player) {
     totalHitSize -= hitSize(player);
-    adaptRings();
   } 
   
   @Override
   protected void clearImpl() {
     totalHitSize = 0;
+  }
+  
+  @Override
+  protected void layoutImpl() {
     adaptRings();
   }
   
+  @Override
+  protected void setImpl() {
+    config = defaults;
+    offsetsEpoch = -1;
+  }
+  
+  /** Gives this follow its own config, initialized with the current one. */
+  public Config customize() {
+    if (config == defaults) config = defaults.copy();
+    return config;
+  }
+  
   @Override
   protected void preUpdate() {
-    checkRings();
-    ringI = followerI = 0;
+    if (!lazyChecks) checkRings();
+    if (offsetsEpoch != epoch) computeOffsets();
+    
+    float base = (rotation(followed) + 180) * Mathf.degRad;
+    cos = Mathf.cos(base);
+    sin = Mathf.sin(base);
+    slotsX.setSize(offsetsX.size);
+    slotsY.setSize(offsetsY.size);
+    slotI = 0;
+  }
+  
+  /** Rotates the slots of the range at once, at back of the leader. */
+  @Override
+  protected void prepareRange(int from, int to, int fromRank, int toRank) {
+    PlacementKernels.instance.rotate(offsetsX.items, offsetsY.items, fromRank, Math.min(toRank, offsetsX.size), cos, sin, 
+                                     slotsX.items, slotsY.items);
+  }
+  
+  @Override
+  protected void update(Vec2 out, int index, T player) {
+    place(out, index, slotI++, player);
+  }
+  
+  @Override
+  protected boolean canIdle() {
+    return true;
   }
   
   @Override
-  protected void update(Vec2 out, int index, Player player) {
-    Ring ring = rings.get(ringI);
-    float shift = (followed.unit().rotation + 180) * Mathf.degRad + ring.angles.get(followerI);
-    out.add(Mathf.cos(shift) * ring.radius, Mathf.sin(shift) * ring.radius);
-
-    if (++followerI >= ring.angles.size) {
-      ringI++;
-      followerI = 0;
+  protected void place(Vec2 out, int index, int rank, T player) {
+    out.add(slotsX.get(rank), slotsY.get(rank));
+  }
+  
+  /** Computes the offsets of the slots, only when the rings have been recomputed. */
+  protected void computeOffsets() {
+    offsetsX.clear();
+    offsetsY.clear();
+    for (int i=0; i<rings.size; i++) {
+      Ring ring = rings.get(i);
+      for (int ii=0; ii<ring.angles.size; ii++) {
+        offsetsX.add(Mathf.cos(ring.angles.get(ii)) * ring.radius);
+        offsetsY.add(Mathf.sin(ring.angles.get(ii)) * ring.radius);
+      }
     }
+    offsetsEpoch = epoch;
   }
 
   /** Update arcs and follower placement */
   public void adaptRings() {
+    recomputed();
     toAdd.clear();
     chords.clear();
     if (followers.isEmpty()) toAdd.add(0);
@@ -181,19 +230,14 @@ public class ArcFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow
     }
   }
 
-  /** Recalculate the rings if .gap, .spacing or a follower size has been changed */
+  /** Recalculate the rings if the {@link #config} or a follower size has been changed */
   public void checkRings() {
     float total = followers.sumf(this::hitSize);
-    if (maxAngle != maxSidesAngle ||
-        gap != ringGap || 
-        spacing != playerSpacing || 
-        total != totalHitSize) {
-      maxSidesAngle = Mathf.clamp(maxSidesAngle, 0.03f, Mathf.PI2);
-      ringGap = Math.max(ringGap, 1);
-      playerSpacing = Math.max(playerSpacing, 0);
-      maxAngle = maxSidesAngle;
-      gap = ringGap;
-      spacing = playerSpacing;
+    if (configVersion != config.version() || total != totalHitSize) {
+      configVersion = config.version();
+      maxAngle = Mathf.clamp(config.maxSidesAngle, 0.03f, Mathf.PI2);
+      gap = Math.max(config.ringGap, 1);
+      spacing = Math.max(config.playerSpacing, 0);
       totalHitSize = total;
       adaptRings();
     }
@@ -223,6 +267,29 @@ public class ArcFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow
   }
   
   
+  public static class Config extends FollowConfig {
+    /** Radius between rings */
+    public float ringGap = 3f * SCALE;
+    /** Spacing between players */
+    public float playerSpacing = 2f * SCALE;
+    /** Max angle for each side, at back of the leader */
+    public float maxSidesAngle = 90f * Mathf.degRad;
+    
+    public Config set(float ringGap, float playerSpacing, float maxSidesAngle) {
+      this.ringGap = ringGap;
+      this.playerSpacing = playerSpacing;
+      this.maxSidesAngle = maxSidesAngle;
+      changed();
+      return this;
+    }
+    
+    @Override
+    public Config copy() {
+      return new Config().set(ringGap, playerSpacing, maxSidesAngle);
+    }
+  }
+  
+  
   /** Pooled */
   public static class Ring implements Pool.Poolable {
     public float radius = 1;
@@ -26,27 +26,49 @@
 
 package fr.zetamap.playerfollow.modes;
 
+import java.nio.ByteBuffer;
+
+import arc.math.geom.Position;
 import arc.math.geom.Vec2;
+import arc.struct.FloatSeq;
 import arc.struct.ObjectMap;
 import arc.util.pooling.Pool;
-import arc.util.pooling.Pools;
 
-import mindustry.gen.Player;
+import fr.zetamap.playerfollow.api.AbstractFollow;
+import fr.zetamap.playerfollow.api.Accessor;
+import fr.zetamap.playerfollow.api.FollowConfig;
 
 
-public class JointFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow {
-  /** Distance between players */
-  public static float playerDistance = 2f * SCALE;
+public class JointFollow<T extends Position> extends AbstractFollow<T> {
+  /** Config shared by all joint follows without their own config. */
+  public static final Config defaults = new Config();
   
-  private final ObjectMap<Player, Vec2> last = new ObjectMap<>();
-  private final Pool<Vec2> vecPool = Pools.get(Vec2.class, Vec2::new);
+  /** The config of this follow, use {@link #customize()} to change only this follow. */
+  public Config config = defaults;
+  private final ObjectMap<T, Vec2> last = new ObjectMap<>();
+  private final Pool<Vec2> vecPool = pool(Vec2::new);
+  /** Solver buffers. Index {@code 0} is the leader, and {@code i+1} is the follower {@code i}. */
+  private final FloatSeq xs = new FloatSeq(), ys = new FloatSeq(), rests = new FloatSeq(), 
+                         cx = new FloatSeq(), cy = new FloatSeq();
+  private boolean solved, moved = true;
   
-  public JointFollow(Player target) {
-    super(target);
+  public JointFollow(T target, Accessor<T> accessor) {
+    super(target, accessor);
+  }
+  
+  @Override
+  protected void setImpl() {
+    config = defaults;
+  }
+  
+  /** Gives this follow its own config, initialized with the current one. */
+  public Config customize() {
+    if (config == defaults) config = defaults.copy();
+    return config;
   }
 
   @Override
-  protected void removeImpl(Player player) {
+  protected void removeImpl(T player) {
     Vec2 v = last.remove(player);
     if (v != null) vecPool.free(v);
   }  
@@ -58,19 +80,170 @@ public class JointFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
   } 
 
   @Override
-  protected void update(Vec2 out, int index, Player player) {
-    Player target = index == 0 ? followed : followers.get(index-1);
-    Vec2 dest = last.get(player, () -> vecPool.obtain().set(player));
-    out.set(target); // reuse 'out' instead of creating another Vec2
-    float distance = dest.dst(out), minDistance = playerDistance + hitSize(target) + hitSize(player);
+  public void writeState(ByteBuffer buffer) {
+    buffer.putInt(followers.size);
+    followers.each(p -> {
+      Vec2 v = last.get(p);
+      if (v == null) buffer.putFloat(accessor.x(p)).putFloat(accessor.y(p));
+      else buffer.putFloat(v.x).putFloat(v.y);
+    });
+  }
+  
+  @Override
+  public void readState(ByteBuffer buffer) {
+    if (buffer.getInt() != followers.size) return;
+    followers.each(p -> last.get(p, () -> vecPool.obtain()).set(buffer.getFloat(), buffer.getFloat()));
+  }
+  
+  /** Runs the solver, if enabled, before placing followers. */
+  @Override
+  protected void preUpdate() {
+    Config config = this.config;
+    moved = false;
+    solved = config.solverIterations > 0;
+    if (!solved) return;
+    
+    int nodes = followers.size+1;
+    // The layout is only recomputed when rest lengths change
+    boolean changed = rests.size != nodes-1;
+    xs.setSize(nodes);
+    ys.setSize(nodes);
+    rests.setSize(nodes-1);
+    cx.setSize(nodes-1);
+    cy.setSize(nodes-1);
+    xs.set(0, leader.x);
+    ys.set(0, leader.y);
+    for (int i=0; i<followers.size; i++) {
+      T player = followers.get(i);
+      Vec2 dest = last.get(player, () -> position(player, vecPool.obtain()));
+      xs.set(i+1, dest.x);
+      ys.set(i+1, dest.y);
+      float rest = config.playerDistance + hitSize(i == 0 ? followed : followers.get(i-1)) + hitSize(player);
+      if (rests.get(i) != rest) {
+        rests.set(i, rest);
+        changed = true;
+      }
+    }
+    if (changed) recomputed();
+    
+    float relaxation = Math.max(1f, Math.min(config.solverRelaxation, 2f));
+    for (int i=0; i<config.solverIterations; i++) {
+      solveConstraints();
+      applyCorrections(relaxation);
+    }
+    // A final forward pass guarantees that every constraint is satisfied when leaving the solver,
+    // so the chain settles in a bounded number of updates, whatever the iteration count.
+    project();
+    
+    for (int i=0; i<followers.size; i++) {
+      Vec2 dest = last.get(followers.get(i));
+      if (dest.x != xs.get(i+1) || dest.y != ys.get(i+1)) moved = true;
+      dest.set(xs.get(i+1), ys.get(i+1));
+    }
+  }
+  
+  /** 
+   * A chain only pulls followers, so once every constraint is satisfied, 
+   * the positions don't change anymore until the leader moves.
+   */
+  @Override
+  protected boolean canIdle() {
+    return !moved;
+  }
+  
+  /** Computes the correction of each constraint, from the solver positions. */
+  protected void solveConstraints() {
+    for (int i=0, n=rests.size; i<n; i++) {
+      float dx = xs.get(i) - xs.get(i+1), dy = ys.get(i) - ys.get(i+1),
+            distance = (float)Math.sqrt(dx * dx + dy * dy), rest = rests.get(i), scale;
+      
+      // The chain only pulls followers, it never pushes them
+      if (distance <= rest) scale = 0;
+      // The leader cannot be moved, so the follower takes the whole correction
+      else if (i == 0) scale = (distance - rest) / distance;
+      else scale = (distance - rest) / distance / 2f;
+      
+      cx.set(i, dx * scale);
+      cy.set(i, dy * scale);
+    }
+  }
+  
+  /** Averages and applies the corrections of their two constraints to the nodes, except the leader. */
+  protected void applyCorrections(float relaxation) {
+    int end = xs.size-1;
+    for (int i=1; i<=end; i++) {
+      float dx = cx.get(i-1), dy = cy.get(i-1), count = 1;
+      if (i < end) {
+        dx -= cx.get(i);
+        dy -= cy.get(i);
+        count++;
+      }
+      xs.incr(i, dx / count * relaxation);
+      ys.incr(i, dy / count * relaxation);
+    }
+  }
+  
+  /** Sequentially projects the nodes on their constraints, from the leader. */
+  protected void project() {
+    for (int i=1, n=xs.size; i<n; i++) {
+      float dx = xs.get(i-1) - xs.get(i), dy = ys.get(i-1) - ys.get(i),
+            distance = (float)Math.sqrt(dx * dx + dy * dy), rest = rests.get(i-1);
+      if (distance <= rest) continue;
+      xs.incr(i, dx * (distance - rest) / distance);
+      ys.incr(i, dy * (distance - rest) / distance);
+    }
+  }
+
+  @Override
+  protected void update(Vec2 out, int index, T player) {
+    if (solved) {
+      out.set(last.get(player));
+      return;
+    }
+    
+    T target = index == 0 ? followed : followers.get(index-1);
+    Vec2 dest = last.get(player, () -> position(player, vecPool.obtain())), 
+         // Positions are applied after computing all followers, so use the computed one of the previous follower
+         targetDest = index == 0 ? leader : last.get(target);
+    // reuse 'out' instead of creating another Vec2
+    if (targetDest != null) out.set(targetDest);
+    else position(target, out);
+    float distance = dest.dst(out), minDistance = config.playerDistance + hitSize(target) + hitSize(player);
 
     if (distance > minDistance) {
       out.sub(dest);
       out.x /= distance; // There is no method to divide by a scalar instead of a vector
       out.y /= distance; //
       dest.add(out.scl(distance - minDistance));
+      moved = true;
     }
 
     out.set(dest);
   }
+  
+  
+  public static class Config extends FollowConfig {
+    /** Distance between players */
+    public float playerDistance = 2f * SCALE;
+    /** 
+     * Iterations of the constraint solver, done each update. <br>
+     * {@code 0} means that the solver is disabled and only a single forward pass is done.
+     */
+    public int solverIterations = 0;
+    /** Over-relaxation factor of the solver, between {@code 1} and {@code 2}, to speed up the convergence. */
+    public float solverRelaxation = 1.5f;
+    
+    public Config set(float playerDistance, int solverIterations, float solverRelaxation) {
+      this.playerDistance = playerDistance;
+      this.solverIterations = solverIterations;
+      this.solverRelaxation = solverRelaxation;
+      changed();
+      return this;
+    }
+    
+    @Override
+    public Config copy() {
+      return new Config().set(playerDistance, solverIterations, solverRelaxation);
+    }
+  }
 }
@@ -26,80 +26,144 @@
 
 package fr.zetamap.playerfollow.modes;
 
+import java.nio.ByteBuffer;
+
 import arc.math.Mathf;
+import arc.math.geom.Position;
 import arc.math.geom.Vec2;
 import arc.struct.FloatSeq;
 import arc.struct.Seq;
 import arc.util.pooling.Pool;
-import arc.util.pooling.Pools;
 
-import mindustry.gen.Player;
+import fr.zetamap.playerfollow.api.Accessor;
+import fr.zetamap.playerfollow.api.FollowConfig;
+import fr.zetamap.playerfollow.api.PlacementKernels;
+import fr.zetamap.playerfollow.api.SplittableFollow;
 
 
-public class OrbitFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow {
-  /** Radius between rings */
-  public static float ringGap = 3f * SCALE;
-  /** Minimum spacing between players */
-  public static float playerSpacing = 2f * SCALE;
-  /** Degrees added each times to each rings */
-  public static float angleSpeed = (1f * SCALE) / SCALE;
+public class OrbitFollow<T extends Position> extends SplittableFollow<T> {
+  /** Config shared by all orbit follows without their own config. */
+  public static final Config defaults = new Config();
 
   public Seq<Ring> rings = new Seq<>();
+  /** The config of this follow, use {@link #customize()} to change only this follow. */
+  public Config config = defaults;
   
-  private int ringI = 0, followerI = 0;
-  private float totalHitSize = 0, gap = ringGap, spacing = playerSpacing, angle = angleSpeed;
+  private int slotI = 0, offsetsEpoch = -1, configVersion = config.version();
+  private float totalHitSize = 0, gap = config.ringGap, spacing = config.playerSpacing, angle = config.angleSpeed;
   private final FloatSeq chords = new FloatSeq();
-  private final Pool<Ring> ringPool = Pools.get(Ring.class, Ring::new);
+  /** Offsets of the slots of all rings, relative to the leader, without and with the angle of their ring. */
+  private final FloatSeq offsetsX = new FloatSeq(), offsetsY = new FloatSeq(), slotsX = new FloatSeq(), slotsY = new FloatSeq();
+  private final Pool<Ring> ringPool = pool(Ring::new);
   
-  public OrbitFollow(Player target) {
-    super(target);
+  public OrbitFollow(T target, Accessor<T> accessor) {
+    super(target, accessor);
   }
   
   @Override
-  protected void addImpl(Player player) {
+  protected void addImpl(T player) {
     totalHitSize += hitSize(player);
-    adaptRings();
   }  
   
   @Override
-  protected void addAllImpl(Seq<Player> followers) {
+  protected void addAllImpl(Seq<T> followers) {
     totalHitSize += followers.sumf(this::hitSize);
-    adaptRings();
   }
   
   @Override
-  protected void removeImpl(Player player) {
+  protected void removeImpl(T player) {
     totalHitSize -= hitSize(player);
-    adaptRings();
   }
   
   @Override
   protected void clearImpl() {
     totalHitSize = 0;
+  }
+  
+  @Override
+  protected void layoutImpl() {
     adaptRings();
   }
   
+  @Override
+  public void writeState(ByteBuffer buffer) {
+    buffer.putInt(rings.size);
+    rings.each(r -> buffer.putFloat(r.angle));
+  }
+  
+  @Override
+  public void readState(ByteBuffer buffer) {
+    if (buffer.getInt() != rings.size) return;
+    rings.each(r -> r.angle = buffer.getFloat());
+  }
+  
+  @Override
+  protected void setImpl() {
+    config = defaults;
+    rings.each(r -> r.angle = 0);
+    offsetsEpoch = -1;
+  }
+  
+  /** Gives this follow its own config, initialized with the current one. */
+  public Config customize() {
+    if (config == defaults) config = defaults.copy();
+    return config;
+  }
+  
   @Override
   protected void preUpdate() {
     if (rings.isEmpty()) return;
-    checkRings();
+    if (!lazyChecks) checkRings();
     
-    // Update rings angle
-    rings.each(r -> r.addAngle(angle));
+    if (offsetsEpoch != epoch) computeOffsets();
     
-    ringI = followerI = 0;
+    slotsX.setSize(offsetsX.size);
+    slotsY.setSize(offsetsY.size);
+    rings.each(r -> r.addAngle(angle));
+    slotI = 0;
+  }
+  
+  /** Rotates the slots of each ring in the range at once. */
+  @Override
+  protected void prepareRange(int from, int to, int fromRank, int toRank) {
+    toRank = Math.min(toRank, offsetsX.size);
+    for (int i=0, start=0; i<rings.size && start<toRank; start+=rings.get(i++).angles.size) {
+      Ring ring = rings.get(i);
+      int end = start + ring.angles.size;
+      if (end <= fromRank) continue;
+      PlacementKernels.instance.rotate(offsetsX.items, offsetsY.items, Math.max(start, fromRank), Math.min(end, toRank), 
+                                       Mathf.cos(ring.angle), Mathf.sin(ring.angle), slotsX.items, slotsY.items);
+    }
   }
 
   @Override
-  protected void update(Vec2 out, int index, Player player) {
-    Ring ring = rings.get(ringI);
-    float shift = ring.angle + ring.angles.get(followerI);
-    out.add(Mathf.cos(shift) * ring.radius, Mathf.sin(shift) * ring.radius);
-    
-    if (++followerI >= ring.angles.size) {
-      ringI++;
-      followerI = 0;
+  protected void update(Vec2 out, int index, T player) {
+    place(out, index, slotI++, player);
+  }
+  
+  /** Rings are only static without angle speed. */
+  @Override
+  protected boolean canIdle() {
+    return angle == 0;
+  }
+  
+  @Override
+  protected void place(Vec2 out, int index, int rank, T player) {
+    out.add(slotsX.get(rank), slotsY.get(rank));
+  }
+  
+  /** Computes the offsets of the slots, only when the rings have been recomputed. */
+  protected void computeOffsets() {
+    offsetsX.clear();
+    offsetsY.clear();
+    for (int i=0; i<rings.size; i++) {
+      Ring ring = rings.get(i);
+      for (int ii=0; ii<ring.angles.size; ii++) {
+        offsetsX.add(Mathf.cos(ring.angles.get(ii)) * ring.radius);
+        offsetsY.add(Mathf.sin(ring.angles.get(ii)) * ring.radius);
+      }
     }
+    offsetsEpoch = epoch;
   }
 
   /**
@@ -109,6 +173,7 @@ public class OrbitFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
    * I chose the approximate method for optimization purposes, at the cost of slight follower overlap in some cases.
    */
   public void adaptRings() {
+    recomputed();
     int inRing = 0, ringI = 0, maxI = followers.size-1, i, ii;
     float angle = 0, biggest = hitSize(followed), totalRadius = gap + biggest,
           size, radius, totalAngle, extra;
@@ -159,17 +224,14 @@ public class OrbitFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
     }
   }
   
-  /** Recalculate the rings if .gap, .spacing or a follower size has been changed */
+  /** Recalculate the rings if the {@link #config} or a follower size has been changed */
   public void checkRings() {
     float total = followers.sumf(this::hitSize);
-    if (gap != ringGap || 
-        spacing != playerSpacing || 
-        total != totalHitSize) {
-      ringGap = Math.max(ringGap, 1);
-      playerSpacing = Math.max(playerSpacing, 0);
-      gap = ringGap;
-      spacing = playerSpacing;
-      angle = angleSpeed;
+    if (configVersion != config.version() || total != totalHitSize) {
+      configVersion = config.version();
+      gap = Math.max(config.ringGap, 1);
+      spacing = Math.max(config.playerSpacing, 0);
+      angle = config.angleSpeed;
       totalHitSize = total;
       adaptRings();
     }
@@ -191,6 +253,29 @@ public class OrbitFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
   }
   
   
+  public static class Config extends FollowConfig {
+    /** Radius between rings */
+    public float ringGap = 3f * SCALE;
+    /** Minimum spacing between players */
+    public float playerSpacing = 2f * SCALE;
+    /** Degrees added each times to each rings */
+    public float angleSpeed = (1f * SCALE) / SCALE;
+    
+    public Config set(float ringGap, float playerSpacing, float angleSpeed) {
+      this.ringGap = ringGap;
+      this.playerSpacing = playerSpacing;
+      this.angleSpeed = angleSpeed;
+      changed();
+      return this;
+    }
+    
+    @Override
+    public Config copy() {
+      return new Config().set(ringGap, playerSpacing, angleSpeed);
+    }
+  }
+  
+  
   /** Pooled */
   public static class Ring implements Pool.Poolable {
     public float angle = 0, radius = 1;
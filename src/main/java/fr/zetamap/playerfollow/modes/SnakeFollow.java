@@ -26,57 +26,98 @@
 
 package fr.zetamap.playerfollow.modes;
 
+import java.nio.ByteBuffer;
+
+import arc.math.geom.Position;
 import arc.math.geom.Vec2;
+import arc.struct.FloatSeq;
 import arc.struct.Seq;
 import arc.util.pooling.Pool;
-import arc.util.pooling.Pools;
 
-import mindustry.gen.Player;
+import fr.zetamap.playerfollow.api.Accessor;
+import fr.zetamap.playerfollow.api.FollowConfig;
+import fr.zetamap.playerfollow.api.PlacementKernels;
+import fr.zetamap.playerfollow.api.SplittableFollow;
 
 
-public class SnakeFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollow {
-  /** Distance between each players */
-  public static float playerDistance = 2f * SCALE;
+public class SnakeFollow<T extends Position> extends SplittableFollow<T> {
+  /** Config shared by all snake follows without their own config. */
+  public static final Config defaults = new Config();
   
   public Seq<Vec2> trail = new Seq<>();
+  /** The config of this follow, use {@link #customize()} to change only this follow. */
+  public Config config = defaults;
   
-  private int leaderI = 0;
-  private float distance = playerDistance, totalDistance = 0, totalHitSize = 0;
-  private final Pool<Vec2> vecPool = Pools.get(Vec2.class, Vec2::new);
+  private int leaderI = 0, configVersion = config.version();
+  private float distance = config.playerDistance, totalHitSize = 0;
+  private final Pool<Vec2> vecPool = pool(Vec2::new);
+  /** Trail points around each follower and where it is between them, then the sampled positions. */
+  private final FloatSeq sourcesX = new FloatSeq(), sourcesY = new FloatSeq(), targetsX = new FloatSeq(), 
+                         targetsY = new FloatSeq(), alphas = new FloatSeq(), sampledX = new FloatSeq(), 
+                         sampledY = new FloatSeq();
   
-  public SnakeFollow(Player target) {
-    super(target);
-    trail.add(vecPool.obtain().set(target));
+  public SnakeFollow(T target, Accessor<T> accessor) {
+    super(target, accessor);
+    trail.add(position(target, vecPool.obtain()));
   }
   
   @Override
-  protected void addImpl(Player player) {
+  protected void addImpl(T player) {
     totalHitSize += hitSize(player);
-    adaptTrail();
   }
   
   @Override
-  protected void addAllImpl(Seq<Player> followers) {
+  protected void addAllImpl(Seq<T> followers) {
     totalHitSize += followers.sumf(this::hitSize);
-    adaptTrail();
   }
   
   @Override
-  protected void removeImpl(Player player) {
+  protected void removeImpl(T player) {
     totalHitSize -= hitSize(player);
-    adaptTrail();
   }  
 
   @Override
   protected void clearImpl() {
     totalHitSize = 0;
+  }
+  
+  @Override
+  protected void layoutImpl() {
     adaptTrail();
   }
   
-  /** Update the position of the leader. */
+  /** Moves the remaining points of the trail to the new target. */
+  @Override
+  protected void setImpl() {
+    config = defaults;
+    trail.each(v -> position(followed, v));
+  }
+  
+  /** Gives this follow its own config, initialized with the current one. */
+  public Config customize() {
+    if (config == defaults) config = defaults.copy();
+    return config;
+  }
+  
+  @Override
+  public void writeState(ByteBuffer buffer) {
+    buffer.putInt(leaderI);
+    buffer.putInt(trail.size);
+    trail.each(v -> buffer.putFloat(v.x).putFloat(v.y));
+  }
+  
+  @Override
+  public void readState(ByteBuffer buffer) {
+    int leader = buffer.getInt(), size = buffer.getInt();
+    if (size != trail.size || leader < 0 || leader >= size) return;
+    leaderI = leader;
+    trail.each(v -> v.set(buffer.getFloat(), buffer.getFloat()));
+  }
+  
+  /** Update the position of the leader, then samples the trail for all followers. */
   @Override
   protected void preUpdate() {
-    checkTrail();
+    if (!lazyChecks) checkTrail();
     Vec2 current = vecPool.obtain().set(getLeader());
 
     while (getLeader().dst(leader) >= distance) {
@@ -84,30 +125,74 @@ public class SnakeFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
       getLeader().set(current.approach(leader, distance));
     }
 
-    totalDistance = leaderDistance();
     vecPool.free(current);
+    sample();
   }
 
   @Override
-  protected void update(Vec2 out, int index, Player player) {
-    totalDistance += hitSize(player);
-    float offset = leaderI + totalDistance / distance;
-    Vec2 source = get((int)Math.ceil(offset % trail.size)),
-         target = totalDistance >= 0 ? get((int)offset) : leader;
-    out.set(source).lerp(target, 1 - (offset % 1));
-    totalDistance += hitSize(player) + distance;
+  protected void update(Vec2 out, int index, T player) {
+    place(out, index, index, player);
+  }
+  
+  @Override
+  protected boolean canIdle() {
+    return true;
+  }
+  
+  @Override
+  protected void place(Vec2 out, int index, int rank, T player) {
+    out.set(sampledX.get(index), sampledY.get(index));
+  }
+  
+  /** Interpolates between the trail points of the followers of the range, at once. */
+  @Override
+  protected void prepareRange(int from, int to, int fromRank, int toRank) {
+    PlacementKernels.instance.lerp(sourcesX.items, sourcesY.items, targetsX.items, targetsY.items, alphas.items, from, to, 
+                                   sampledX.items, sampledY.items);
+  }
+  
+  /** 
+   * Finds the trail points around each follower, along the trail from the leader point. 
+   * They are then interpolated by {@link #prepareRange(int, int, int, int)}.
+   */
+  protected void sample() {
+    int n = followers.size;
+    sourcesX.setSize(n);
+    sourcesY.setSize(n);
+    targetsX.setSize(n);
+    targetsY.setSize(n);
+    alphas.setSize(n);
+    sampledX.setSize(n);
+    sampledY.setSize(n);
+    
+    float total = leaderDistance();
+    for (int i=0; i<n; i++) {
+      T player = followers.get(i);
+      if (cannotUpdate(player)) continue;
+      
+      total += hitSize(player);
+      float offset = leaderI + total / distance;
+      Vec2 source = get((int)Math.ceil(offset % trail.size)),
+           target = total >= 0 ? get((int)offset) : leader;
+      sourcesX.set(i, source.x);
+      sourcesY.set(i, source.y);
+      targetsX.set(i, target.x);
+      targetsY.set(i, target.y);
+      alphas.set(i, 1 - (offset % 1));
+      total += hitSize(player) + distance;
+    }
   }
 
   /** 
-   * Recalculates the trail if {@link #playerDistance} has been modified or 
+   * Recalculates the trail if the {@link #config} has been modified or 
    * if one of the followers has changed of size. 
    */
   public void checkTrail() {
     float total = followers.sumf(this::hitSize);
     
-    if (playerDistance != distance || total != totalHitSize) {
-      distance = playerDistance;
-      if (distance < 1) distance = 1;
+    if (configVersion != config.version() || total != totalHitSize) {
+      configVersion = config.version();
+      distance = Math.max(config.playerDistance, 1);
       totalHitSize = total;
       adaptTrail();
     }    
@@ -118,6 +203,7 @@ public class SnakeFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
    * Must be used instead of {@link #increaseTrail(int, int, Vec2, Vec2)} and {@link #decreaseTrail(int)}.
    */
   public void adaptTrail() {
+    recomputed();
     int delta = totalSize()+1 - trail.size;
     
     if (delta > 0) {
@@ -191,12 +277,12 @@ public class SnakeFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
   }
 
   public float leaderDistance() {
-    return cannotUpdate(followed) ? 1f : followed.unit().hitSize + leader.dst(getLeader());
+    return cannotUpdate(followed) ? 1f : accessor.hitSize(followed) + leader.dst(getLeader());
   }
   
   /** Gets the size of a follower, in the trail. */
-  public float size(Player player) {
-    return cannotUpdate(player) ? 1f : (player.unit().hitSize + distance) / distance;
+  public float size(T player) {
+    return cannotUpdate(player) ? 1f : (accessor.hitSize(player) + distance) / distance;
   }
   
   /** Gets the total size of the trail. */
@@ -223,4 +309,21 @@ public class SnakeFollow extends fr.zetamap.playerfollow.api.AbstractPlayerFollo
   public Vec2 get(int i) {
     return trail.get(Math.floorMod(i, trail.size));
   }
-}
\ No newline at end of file
+  
+  
+  public static class Config extends FollowConfig {
+    /** Distance between each players */
+    public float playerDistance = 2f * SCALE;
+    
+    public Config set(float playerDistance) {
+      this.playerDistance = playerDistance;
+      changed();
+      return this;
+    }
+    
+    @Override
+    public Config copy() {
+      return new Config().set(playerDistance);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fr.zetamap.playerfollow.api;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/** 
+ * {@link PlacementKernels} using the Vector API, only in the Java 21 layer of the multi-release jar. <br>
+ * Lanes do the same operations as the scalar kernels, and the tails are done by them.
+ */
+class VectorKernels extends PlacementKernels {
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+  
+  @Override
+  public void rotate(float[] xs, float[] ys, int from, int to, float cos, float sin, float[] outX, float[] outY) {
+    int i = from, bound = from + SPECIES.loopBound(to - from);
+    for (; i<bound; i+=SPECIES.length()) {
+      FloatVector x = FloatVector.fromArray(SPECIES, xs, i), y = FloatVector.fromArray(SPECIES, ys, i);
+      x.mul(cos).sub(y.mul(sin)).intoArray(outX, i);
+      x.mul(sin).add(y.mul(cos)).intoArray(outY, i);
+    }
+    super.rotate(xs, ys, i, to, cos, sin, outX, outY);
+  }
+  
+  @Override
+  public void lerp(float[] sourcesX, float[] sourcesY, float[] targetsX, float[] targetsY, float[] alphas, 
+                   int from, int to, float[] outX, float[] outY) {
+    int i = from, bound = from + SPECIES.loopBound(to - from);
+    for (; i<bound; i+=SPECIES.length()) {
+      FloatVector alpha = FloatVector.fromArray(SPECIES, alphas, i),
+                  sx = FloatVector.fromArray(SPECIES, sourcesX, i), sy = FloatVector.fromArray(SPECIES, sourcesY, i);
+      sx.add(FloatVector.fromArray(SPECIES, targetsX, i).sub(sx).mul(alpha)).intoArray(outX, i);
+      sy.add(FloatVector.fromArray(SPECIES, targetsY, i).sub(sy).mul(alpha)).intoArray(outY, i);
+    }
+    super.lerp(sourcesX, sourcesY, targetsX, targetsY, alphas, i, to, outX, outY);
+  }
+  
+  @Override
+  public String name() {
+    return "vector (" + SPECIES.length() + " lanes)";
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import arc.struct.IntIntMap;
+import arc.struct.IntMap;
+import arc.struct.IntSeq;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+import fr.zetamap.playerfollow.api.Follow;
+import fr.zetamap.playerfollow.api.FollowManager;
+import fr.zetamap.playerfollow.api.FollowRecorder;
+import fr.zetamap.playerfollow.api.TestEntities;
+
+
+public class FollowTraceTest {
+  static final float world = 8000;
+  @TempDir Path dir;
+  Path file;
+  TestEntities entities;
+  FollowManager<TraceEntity> manager;
+  TraceEntity leader;
+  Follow<TraceEntity> follow;
+  
+  @BeforeEach
+  void setup() throws IOException {
+    file = dir.resolve("trace.bin");
+    entities = new TestEntities();
+    manager = entities.manager();
+    manager.recorder = new FollowRecorder<>(manager, file);
+    leader = entities.add("leader", 400, 400);
+    follow = manager.add(TestEntities.mode("arc"), leader);
+    for (int i=0; i<3; i++) follow.add(entities.add("follower" + i));
+  }
+  
+  /** Moves the leader and updates, for {@code ticks} ticks. */
+  void update(int ticks) {
+    for (int i=0; i<ticks; i++) {
+      leader.x += 5;
+      leader.rotation += 10;
+      manager.updateNow(world, world);
+    }
+  }
+  
+  @Test
+  void format() throws IOException {
+    update(3);
+    follow.add(entities.add("follower3"));
+    update(2);
+    manager.recorder.close();
+    
+    Trace trace = new Trace(file);
+    assertArrayEquals(new int[]{0, 1, 2, 3, 4}, trace.ticks.toArray());
+    assertEquals(1, trace.modes.size);
+    assertEquals("arc", trace.modes.get(0));
+    assertEquals(5, trace.entities.size);
+    // Membership only written when changed
+    assertArrayEquals(new int[]{3, -1, -1, 4, -1}, trace.memberships.toArray());
+    assertEquals(3 * 3 + 4 * 2, trace.outputs);
+  }
+  
+  @Test
+  void prunedEntitiesAreRedefined() throws IOException {
+    int interval = FollowRecorder.pruneInterval;
+    FollowRecorder.pruneInterval = 1;
+    try {
+      TraceEntity removed = entities.online.get("follower0");
+      update(1);
+      follow.remove(removed);
+      update(2);
+      follow.add(removed);
+      update(1);
+      manager.recorder.close();
+    } finally {
+      FollowRecorder.pruneInterval = interval;
+    }
+    
+    Trace trace = new Trace(file);
+    IntSeq ids = new IntSeq();
+    for (IntMap.Entry<String> e : trace.entities) {
+      if (e.value.equals("follower0")) ids.add(e.key);
+    }
+    assertEquals(2, ids.size);
+    assertNotEquals(ids.get(0), ids.get(1));
+  }
+  
+  @Test
+  void replay() throws IOException {
+    update(3);
+    follow.add(entities.add("follower3"));
+    update(2);
+    manager.recorder.close();
+    
+    FollowReplay replay = new FollowReplay(file, null);
+    replay.run();
+    assertEquals(5, replay.ticks);
+    assertEquals(3 * 3 + 4 * 2, replay.compared);
+    assertEquals(0f, replay.maxError, 1e-3f);
+  }
+  
+  
+  /** Strict parser of a trace, checking that ids are defined before being used. */
+  static class Trace {
+    final IntMap<String> entities = new IntMap<>(), modes = new IntMap<>();
+    final IntSeq ticks = new IntSeq(), memberships = new IntSeq();
+    /** Last recorded number of followers, by leader id. */
+    final IntIntMap followers = new IntIntMap();
+    int outputs;
+    
+    Trace(Path file) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+      assertEquals(FollowRecorder.MAGIC, buffer.getInt());
+      
+      while (buffer.hasRemaining()) {
+        byte type = buffer.get();
+        switch (type) {
+          case FollowRecorder.ENTITY: define(buffer, entities); break;
+          case FollowRecorder.MODE: define(buffer, modes); break;
+          case FollowRecorder.TICK: ticks.add(buffer.getInt()); break;
+          case FollowRecorder.FOLLOW: {
+            int leader = entity(buffer);
+            assertTrue(modes.containsKey(buffer.getShort()));
+            for (int i=0; i<4; i++) buffer.getFloat(); // x, y, rotation, size
+            int count = buffer.getInt();
+            memberships.add(count);
+            if (count >= 0) {
+              for (int i=0; i<count; i++) entity(buffer);
+              followers.put(leader, count);
+            } else assertTrue(followers.containsKey(leader), "membership never written");
+            for (int i=0, n=followers.get(leader, 0); i<n; i++) assertTrue(buffer.getFloat() > 0);
+            break;
+          }
+          case FollowRecorder.OUTPUT: 
+            entity(buffer);
+            buffer.getFloat();
+            buffer.getFloat();
+            outputs++;
+            break;
+          default: fail("Unknown record type " + type);
+        }
+      }
+    }
+    
+    int entity(ByteBuffer buffer) {
+      int id = buffer.getInt();
+      assertTrue(entities.containsKey(id), "entity used before being defined");
+      return id;
+    }
+    
+    void define(ByteBuffer buffer, IntMap<String> names) {
+      int id = buffer.getInt();
+      byte[] bytes = new byte[buffer.getShort() & 0xffff];
+      buffer.get(bytes);
+      assertFalse(names.containsKey(id), "defined twice");
+      names.put(id, new String(bytes, StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+import fr.zetamap.playerfollow.modes.ArcFollow;
+
+
+public class AdmissionTest {
+  TestEntities entities;
+  FollowManager<TraceEntity> manager;
+  Admission<TraceEntity> admission;
+  FollowMode<TraceEntity> arc, joint, snake;
+  
+  @BeforeEach
+  void setup() {
+    entities = new TestEntities();
+    manager = entities.manager();
+    admission = manager.admission;
+    arc = TestEntities.mode("arc");
+    joint = TestEntities.mode("joint");
+    snake = TestEntities.mode("snake");
+  }
+  
+  Follow<TraceEntity> follow(String target, FollowMode<TraceEntity> mode, int followers) {
+    Follow<TraceEntity> follow = manager.add(mode, entities.add(target));
+    for (int i=0; i<followers; i++) follow.add(entities.add(target + "-" + i));
+    return follow;
+  }
+  
+  @Test
+  void costModel() {
+    FollowMode<TraceEntity> mode = new FollowMode<>("test", ArcFollow.class, ArcFollow::new);
+    mode.setCost(2f, 0.5f, 1f);
+    assertEquals(0f, mode.cost(0));
+    assertEquals(7f, mode.cost(10), 1e-4f);
+    mode.setCost(1f, 2f, 2f);
+    assertEquals(19f, mode.cost(3), 1e-4f);
+  }
+  
+  @Test
+  void calibration() {
+    FollowMode<TraceEntity> mode = new FollowMode<>("test", ArcFollow.class, ArcFollow::new);
+    mode.setCost(2f, 0.5f, 1f);
+    // Measured updates of 3 us + 0.25 us per follower
+    for (int i=0; i<FollowMode.calibrationSamples-1; i++) mode.sample(1 + i % 50, (long)((3 + 0.25 * (1 + i % 50)) * 1000));
+    assertEquals(7f, mode.cost(10), 1e-4f, "not calibrated yet");
+    
+    mode.sample(10, 5500);
+    assertEquals(3f, mode.fixedCost, 1e-3f);
+    assertEquals(0.25f, mode.followerCost, 1e-4f);
+    
+    // Same size measures only fit the fixed cost
+    mode.setCost(2f, 0.5f, 1f);
+    for (int i=0; i<FollowMode.calibrationSamples; i++) mode.sample(10, 9000);
+    assertEquals(0.5f, mode.followerCost);
+    assertEquals(4f, mode.fixedCost, 1e-3f);
+  }
+  
+  @Test
+  void projectedCost() {
+    follow("a", arc, 10);
+    follow("b", snake, 20);
+    follow("empty", joint, 0);
+    admission.update();
+    assertEquals((arc.cost(10) + snake.cost(20)) / 1000f, admission.projected(), 1e-6f);
+  }
+  
+  @Test
+  void limits() {
+    admission.maxFollowers = 5;
+    follow("a", arc, 5);
+    assertEquals(Admission.Result.FULL, admission.check(entities.online.get("a"), arc, 1));
+    assertEquals(Admission.Result.ACCEPTED, admission.check(entities.add("b"), arc, 5));
+    
+    admission.maxFollows = 1;
+    assertEquals(Admission.Result.FULL, admission.check(entities.add("c"), arc, 1));
+    
+    admission.enabled = false;
+    assertEquals(Admission.Result.ACCEPTED, admission.check(entities.add("d"), arc, 100));
+  }
+  
+  @Test
+  void budget() {
+    TraceEntity target = entities.add("target");
+    float expensive = snake.cost(100), cheap = joint.cost(100);
+    
+    admission.budget = (expensive + cheap) / 2 / 1000f;
+    assertEquals(Admission.Result.REDIRECTED, admission.check(target, snake, 100));
+    admission.budget = cheap / 2 / 1000f;
+    assertEquals(Admission.Result.OVERLOADED, admission.check(target, snake, 100));
+    admission.budget = expensive * 2 / 1000f;
+    assertEquals(Admission.Result.ACCEPTED, admission.check(target, snake, 100));
+    
+    // Other follows are counted in the budget
+    follow("other", arc, 10);
+    admission.budget = (expensive + arc.cost(10) / 2) / 1000f;
+    assertEquals(Admission.Result.REDIRECTED, admission.check(target, snake, 100));
+  }
+  
+  @Test
+  void currentFollowReplaced() {
+    Follow<TraceEntity> follow = follow("target", snake, 90);
+    // Only the new size of the follow is counted, not its current cost in addition
+    admission.budget = snake.cost(100) * 1.001f / 1000f;
+    assertEquals(Admission.Result.ACCEPTED, admission.check(follow.followed(), joint, 10));
+    admission.budget = snake.cost(99) / 1000f;
+    assertEquals(Admission.Result.REDIRECTED, admission.check(follow.followed(), arc, 10));
+  }
+  
+  @Test
+  void joinRedirected() {
+    TraceEntity target = follow("target", snake, 50).followed();
+    admission.budget = (snake.cost(51) + joint.cost(51)) / 2 / 1000f;
+    
+    TraceEntity follower = entities.add("follower");
+    assertEquals(Admission.Result.REDIRECTED, manager.join(follower, target, snake));
+    assertSame(joint, FollowMode.of(manager.get(target)));
+    assertSame(manager.get(target), manager.find(follower));
+  }
+}
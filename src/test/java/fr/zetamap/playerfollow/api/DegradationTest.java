@@ -0,0 +1,80 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class DegradationTest {
+  TestEntities entities = new TestEntities();
+  FollowManager<TraceEntity> manager = entities.manager();
+  Degradation<TraceEntity> degradation = manager.degradation;
+  
+  /** @return a follow of {@code hugeGroup} followers. */
+  Follow<TraceEntity> huge(String key) {
+    Follow<TraceEntity> follow = manager.add(TestEntities.mode("snake"), entities.add(key));
+    for (int i=0; i<degradation.hugeGroup; i++) follow.add(entities.add(key + i));
+    return follow;
+  }
+  
+  /** Runs {@code count} checks of over budget updates. */
+  void checks(int count) {
+    for (int i=0; i<count; i++) {
+      manager.stats.update((long)(degradation.budget * 2e6f));
+      degradation.check();
+    }
+  }
+  
+  @Test
+  void degradedRestored() {
+    TraceEntity leader = huge("leader").followed();
+    degradation.setLevel(Degradation.CHEAP_MODE);
+    degradation.degrade();
+    assertSame(TestEntities.mode("joint"), FollowMode.of(manager.get(leader)));
+    
+    degradation.setLevel(Degradation.NORMAL);
+    assertSame(TestEntities.mode("snake"), FollowMode.of(manager.get(leader)));
+    assertTrue(degradation.degraded.isEmpty());
+  }
+  
+  @Test
+  void removedFollowsPruned() {
+    TraceEntity removed = huge("removed").followed(), kept = huge("kept").followed();
+    degradation.setLevel(Degradation.CHEAP_MODE);
+    checks(1);
+    assertEquals(2, degradation.degraded.size);
+    
+    manager.remove(manager.get(removed));
+    checks(60);
+    assertFalse(degradation.degraded.containsKey(removed));
+    assertTrue(degradation.degraded.containsKey(kept));
+  }
+}
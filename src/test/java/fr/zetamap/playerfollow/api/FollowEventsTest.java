@@ -0,0 +1,123 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import arc.struct.LongSeq;
+
+
+public class FollowEventsTest {
+  /** @return the values of the last {@code limit} events, oldest first. */
+  static LongSeq values(FollowEvents events, int limit) {
+    LongSeq values = new LongSeq();
+    events.each(limit, e -> values.add(e.value));
+    return values;
+  }
+  
+  static void record(FollowEvents events, int from, int to) {
+    for (int i=from; i<to; i++) events.record(FollowEvents.Type.LAYOUT, "subject", null, i);
+  }
+  
+  @Test
+  void capacity() {
+    assertEquals(8, new FollowEvents(5).capacity());
+    assertEquals(8, new FollowEvents(8).capacity());
+    assertEquals(2, new FollowEvents(0).capacity());
+  }
+  
+  @Test
+  void beforeWraparound() {
+    FollowEvents events = new FollowEvents(4);
+    assertEquals(0, values(events, 10).size);
+    record(events, 0, 3);
+    assertArrayEquals(new long[]{0, 1, 2}, values(events, 10).toArray());
+    assertArrayEquals(new long[]{1, 2}, values(events, 2).toArray());
+  }
+  
+  @Test
+  void wraparound() {
+    FollowEvents events = new FollowEvents(4);
+    record(events, 0, 10);
+    assertEquals(10, events.recorded());
+    assertArrayEquals(new long[]{6, 7, 8, 9}, values(events, 100).toArray());
+    assertArrayEquals(new long[]{8, 9}, values(events, 2).toArray());
+    
+    LongSeq sequences = new LongSeq();
+    events.each(4, e -> {
+      sequences.add(e.sequence);
+      assertEquals(FollowEvents.Type.LAYOUT, e.type);
+      assertEquals("subject", e.subject);
+    });
+    assertArrayEquals(new long[]{6, 7, 8, 9}, sequences.toArray());
+  }
+  
+  @Test
+  void concurrentRecording() throws InterruptedException {
+    FollowEvents events = new FollowEvents(16);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> error = new AtomicReference<>();
+    // Reads while writing: events may be missing, but never mixed nor out of order
+    Thread reader = new Thread(() -> {
+      long[] last = {-1};
+      while (!done.get()) {
+        last[0] = -1;
+        events.each(16, e -> {
+          if (e.sequence <= last[0]) error.set("out of order: " + e.sequence + " after " + last[0]);
+          if (!e.detail.equals(e.value) || !e.subject.equals(e.value / 1000)) error.set("mixed event " + e.sequence);
+          last[0] = e.sequence;
+        });
+      }
+    });
+    reader.start();
+    
+    Thread[] threads = new Thread[4];
+    for (int t=0; t<threads.length; t++) {
+      long base = t * 1000L;
+      threads[t] = new Thread(() -> {
+        for (long i=base; i<base + 1000; i++) events.record(FollowEvents.Type.LAYOUT, i / 1000, i, i);
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) t.join();
+    done.set(true);
+    reader.join();
+    assertNull(error.get());
+    
+    // Once writers are done, each slot holds its newest event
+    assertEquals(4000, events.recorded());
+    LongSeq sequences = new LongSeq();
+    events.each(16, e -> sequences.add(e.sequence));
+    assertEquals(16, sequences.size);
+    for (int i=0; i<sequences.size; i++) assertEquals(4000 - 16 + i, sequences.get(i));
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class FollowForestTest {
+  TestEntities entities;
+  FollowManager<TraceEntity> manager;
+  FollowForest<TraceEntity> forest;
+  
+  @BeforeEach
+  void setup() {
+    entities = new TestEntities();
+    manager = entities.manager();
+    forest = manager.forest;
+  }
+  
+  Follow<TraceEntity> follow(TraceEntity target, TraceEntity... followers) {
+    Follow<TraceEntity> follow = manager.get(target);
+    if (follow == null) follow = manager.add(TestEntities.mode("arc"), target);
+    for (TraceEntity f : followers) follow.add(f);
+    return follow;
+  }
+  
+  /** Asserts that each follow is ordered after the follow moving its target, and that trees are contiguous. */
+  void assertOrdered() {
+    assertEquals(manager.all.size, forest.ordered.size);
+    for (int t=0; t<forest.trees.size; t++) {
+      int start = forest.trees.get(t), end = t+1 < forest.trees.size ? forest.trees.get(t+1) : forest.ordered.size;
+      TraceEntity root = forest.root(forest.ordered.get(start).followed());
+      for (int i=start; i<end; i++) {
+        Follow<TraceEntity> follow = forest.ordered.get(i);
+        assertSame(root, forest.root(follow.followed()));
+        TraceEntity leader = forest.leader(follow.followed());
+        if (leader != null && manager.get(leader) != null) 
+          assertTrue(forest.ordered.indexOf(manager.get(leader), true) < i);
+      }
+    }
+  }
+  
+  @Test
+  void chainsAreOrdered() {
+    TraceEntity root = entities.add("root"), a = entities.add("a"), b = entities.add("b"), c = entities.add("c"), 
+                other = entities.add("other"), d = entities.add("d");
+    // Added from leaves to roots
+    follow(b, c);
+    follow(a, b);
+    follow(other, d);
+    follow(root, a);
+    forest.check();
+    
+    assertEquals(2, forest.trees.size);
+    assertOrdered();
+    assertSame(root, forest.root(c));
+    assertSame(b, forest.leader(c));
+    assertNull(forest.leader(root));
+  }
+  
+  @Test
+  void followerChangesRebuild() {
+    TraceEntity root = entities.add("root"), a = entities.add("a"), b = entities.add("b");
+    follow(root, a);
+    Follow<TraceEntity> follow = follow(a);
+    follow(b);
+    forest.check();
+    assertEquals(2, forest.trees.size);
+    
+    // Not invalidated, only detected from the changes of the follow
+    follow.add(b);
+    forest.check();
+    assertEquals(1, forest.trees.size);
+    assertOrdered();
+  }
+  
+  @Test
+  void loops() {
+    TraceEntity root = entities.add("root"), a = entities.add("a"), b = entities.add("b"), 
+                other = entities.add("other");
+    follow(root, a);
+    follow(a, b);
+    follow(other);
+    
+    assertTrue(forest.wouldLoop(root, b));
+    assertTrue(forest.wouldLoop(a, a));
+    assertFalse(forest.wouldLoop(b, root));
+    assertFalse(forest.wouldLoop(root, other));
+  }
+  
+  @Test
+  void loopsAreStillUpdated() {
+    TraceEntity a = entities.add("a"), b = entities.add("b");
+    follow(a, b);
+    follow(b, a);
+    forest.check();
+    
+    assertEquals(2, forest.ordered.size);
+    assertTrue(forest.ordered.contains(manager.get(a), true));
+    assertTrue(forest.ordered.contains(manager.get(b), true));
+  }
+}
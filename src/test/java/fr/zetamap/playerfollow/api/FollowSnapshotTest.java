@@ -0,0 +1,170 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import arc.util.Time;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class FollowSnapshotTest {
+  @TempDir Path dir;
+  Path file;
+  TestEntities entities;
+  
+  @BeforeEach
+  void setup() throws IOException {
+    file = dir.resolve("follows.bin");
+    entities = new TestEntities();
+    // Written by a first server run
+    FollowManager<TraceEntity> manager = entities.manager();
+    TraceEntity leader = entities.add("leader");
+    Follow<TraceEntity> follow = manager.add(TestEntities.mode("snake"), leader);
+    follow.add(entities.add("a"));
+    follow.add(entities.add("b"));
+    snapshot(manager).write();
+  }
+  
+  FollowSnapshot<TraceEntity> snapshot(FollowManager<TraceEntity> manager) {
+    return new FollowSnapshot<>(manager, entities.online::get, file);
+  }
+  
+  /** @return the snapshot of a new server run, where no one is online yet. */
+  FollowSnapshot<TraceEntity> restart() {
+    entities.online.clear();
+    FollowSnapshot<TraceEntity> snapshot = snapshot(entities.manager());
+    snapshot.load();
+    return snapshot;
+  }
+  
+  /** Sets the time of the last write, and the one of the first record. */
+  void setTimes(long lastWrite, long record) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+    bytes.putLong(4, lastWrite);
+    bytes.putLong(FollowSnapshot.HEADER + 5, record);
+    Files.write(file, bytes.array());
+  }
+  
+  @Test
+  void roundTrip() {
+    FollowSnapshot<TraceEntity> snapshot = restart();
+    assertEquals(1, snapshot.pending.size);
+    TraceEntity leader = entities.add("leader"), a = entities.add("a");
+    snapshot.restore(leader);
+    snapshot.restore(a);
+    
+    Follow<TraceEntity> follow = snapshot.manager.get(leader);
+    assertNotNull(follow);
+    assertEquals("snake", FollowMode.of(follow).name);
+    assertTrue(follow.followers().contains(a, true));
+    
+    // The other follower joins when it comes back
+    TraceEntity b = entities.add("b");
+    snapshot.restore(b);
+    assertSame(follow, snapshot.manager.find(b));
+    assertTrue(snapshot.pending.isEmpty());
+    assertTrue(snapshot.pendingFollowers.isEmpty());
+  }
+  
+  @Test
+  void notRestoredEmpty() {
+    FollowSnapshot<TraceEntity> snapshot = restart();
+    TraceEntity leader = entities.add("leader");
+    snapshot.restore(leader);
+    assertNull(snapshot.manager.get(leader));
+    assertTrue(snapshot.pending.containsKey("leader"));
+    
+    TraceEntity a = entities.add("a");
+    snapshot.restore(a);
+    assertNotNull(snapshot.manager.get(leader));
+    assertSame(snapshot.manager.get(leader), snapshot.manager.find(a));
+  }
+  
+  @Test
+  void followersNotTaken() {
+    FollowSnapshot<TraceEntity> snapshot = restart();
+    TraceEntity other = entities.add("other"), a = entities.add("a");
+    // Followed someone else before its previous leader came back
+    Follow<TraceEntity> follow = snapshot.manager.add(TestEntities.mode("snake"), other);
+    follow.add(a);
+    TraceEntity leader = entities.add("leader"), b = entities.add("b");
+    snapshot.restore(leader);
+    snapshot.restore(b);
+    
+    assertSame(follow, snapshot.manager.find(a));
+    assertSame(snapshot.manager.get(leader), snapshot.manager.find(b));
+    assertFalse(snapshot.manager.get(leader).followers().contains(a, true));
+  }
+  
+  @Test
+  void expiresFromLastWrite() throws IOException {
+    long now = Time.millis(), old = now - (long)(FollowSnapshot.expiry * 1000) * 2;
+    // Unchanged record of a follow that was still alive at the last write
+    setTimes(now, old);
+    assertEquals(1, restart().pending.size);
+    
+    setTimes(old, old);
+    assertTrue(restart().pending.isEmpty());
+  }
+  
+  @Test
+  void waitingRecordsKeepTheirExpiry() throws IOException {
+    long now = Time.millis(), old = now - (long)(FollowSnapshot.expiry * 1000) / 2;
+    setTimes(old, old);
+    // Rewritten while still waiting, then the server stops again
+    restart().write();
+    
+    ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+    assertEquals(FollowSnapshot.KEPT, bytes.get(FollowSnapshot.HEADER + 4));
+    assertEquals(old, bytes.getLong(FollowSnapshot.HEADER + 5));
+    assertTrue(bytes.getLong(4) >= now);
+  }
+  
+  @Test
+  void deletedRecords() {
+    FollowSnapshot<TraceEntity> snapshot = snapshot(entities.manager());
+    snapshot.load();
+    TraceEntity leader = entities.add("leader"), a = entities.add("a");
+    snapshot.restore(a);
+    snapshot.write();
+    snapshot.manager.remove(leader);
+    snapshot.write();
+    
+    assertTrue(restart().pending.isEmpty());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class IndexedFollowManagerTest {
+  TestEntities entities;
+  IndexedFollowManager<TraceEntity> manager;
+  TraceEntity leader, a, b;
+  
+  @BeforeEach
+  void setup() {
+    entities = new TestEntities();
+    manager = new IndexedFollowManager<>(TraceEntity.accessor, (f, p) -> {}, f -> f.key, 1);
+    leader = entities.add("leader");
+    a = entities.add("a");
+    b = entities.add("b");
+    manager.follow(a, leader, TestEntities.mode("arc"));
+    manager.follow(b, leader, TestEntities.mode("arc"));
+  }
+  
+  @Test
+  void indexed() {
+    assertSame(leader, manager.leader(a));
+    assertSame(manager.get(leader), manager.find(b));
+    
+    assertTrue(manager.unfollow(a));
+    assertNull(manager.leader(a));
+    assertFalse(manager.get(leader).contains(a));
+  }
+  
+  @Test
+  void removedFollow() {
+    manager.remove(leader);
+    assertNull(manager.leader(a));
+    assertNull(manager.leader(b));
+  }
+  
+  @Test
+  void droppedFollow() {
+    // Like a follow that failed while updating
+    manager.pendingChanges.put(leader, null);
+    manager.applyChanges();
+    assertNull(manager.get(leader));
+    assertNull(manager.leader(a));
+    assertNull(manager.find(b));
+  }
+  
+  @Test
+  void modeChangeKeepsIndex() {
+    manager.changeMode(leader, TestEntities.mode("snake"));
+    assertSame(leader, manager.leader(a));
+    assertSame(manager.get(leader), manager.find(a));
+  }
+  
+  @Test
+  void replacedFollow() {
+    // Only the followers kept by the new follow stay indexed
+    Follow<TraceEntity> follow = TestEntities.mode("snake").create(leader, manager.accessor);
+    follow.add(a);
+    manager.add(follow);
+    assertSame(leader, manager.leader(a));
+    assertNull(manager.leader(b));
+  }
+  
+  @Test
+  void joinIndexed() {
+    TraceEntity other = entities.add("other");
+    assertTrue(manager.join(a, other, TestEntities.mode("arc")).admitted());
+    assertSame(other, manager.leader(a));
+    assertFalse(manager.get(leader).contains(a));
+  }
+}
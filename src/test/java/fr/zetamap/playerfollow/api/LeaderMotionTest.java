@@ -0,0 +1,132 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import arc.math.geom.Vec2;
+import arc.struct.Seq;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class LeaderMotionTest {
+  TestEntities entities;
+  LeaderMotion<TraceEntity> motion;
+  TraceEntity leader;
+  Seq<Follow<TraceEntity>> follows;
+  
+  @BeforeEach
+  void setup() {
+    entities = new TestEntities();
+    FollowManager<TraceEntity> manager = entities.manager();
+    motion = manager.motion;
+    motion.leadMillis = 60f;
+    motion.smoothing = 0.5f;
+    leader = entities.add("leader", 100, 100);
+    Follow<TraceEntity> follow = manager.add(TestEntities.mode("arc"), leader);
+    follows = Seq.with(follow);
+  }
+  
+  /** Moves the leader by {@code dx}, {@code dy}, as if the last update was {@code millis} ago. */
+  void move(float dx, float dy, long millis) {
+    motion.motions.get(leader).time -= millis * 1000000;
+    leader.x += dx;
+    leader.y += dy;
+    motion.update(follows);
+  }
+  
+  @Test
+  void velocity() {
+    motion.update(follows);
+    assertEquals(0f, motion.motions.get(leader).vx);
+    
+    // 20 units in one second, half weighted by the smoothing
+    move(20, 0, 1000);
+    LeaderMotion.Motion m = motion.motions.get(leader);
+    assertEquals(0.01f, m.vx, 0.001f);
+    assertEquals(0f, m.vy);
+    
+    move(20, 0, 1000);
+    assertEquals(0.015f, m.vx, 0.0015f);
+  }
+  
+  @Test
+  void teleport() {
+    motion.update(follows);
+    move(20, 0, 1000);
+    move(motion.teleportDistance + 1, 0, 100);
+    assertEquals(0f, motion.motions.get(leader).vx);
+  }
+  
+  @Test
+  void almostStopped() {
+    motion.update(follows);
+    // Extrapolated by less than 0.1 unit
+    move(1, 0, 1000);
+    assertEquals(0f, motion.motions.get(leader).vx);
+  }
+  
+  @Test
+  void extrapolation() {
+    Vec2 out = new Vec2();
+    assertEquals(new Vec2(100, 100), motion.extrapolate(leader, out), "unknown leader");
+    
+    motion.update(follows);
+    LeaderMotion.Motion m = motion.motions.get(leader);
+    m.vx = 0.1f;
+    m.vy = -0.05f;
+    motion.extrapolate(leader, out);
+    assertEquals(106f, out.x, 1e-4f);
+    assertEquals(97f, out.y, 1e-4f);
+    
+    motion.leadMillis = 0;
+    assertEquals(new Vec2(100, 100), motion.extrapolate(leader, out), "disabled");
+  }
+  
+  @Test
+  void maxLead() {
+    motion.update(follows);
+    LeaderMotion.Motion m = motion.motions.get(leader);
+    m.vx = 3f;
+    m.vy = 4f;
+    Vec2 out = motion.extrapolate(leader, new Vec2()).sub(100, 100);
+    assertEquals(motion.maxLead, out.len(), 1e-3f);
+    assertEquals(0.6f, out.x / out.len(), 1e-4f);
+  }
+  
+  @Test
+  void forgetsUnfollowedLeaders() {
+    motion.update(follows);
+    assertEquals(1, motion.motions.size);
+    motion.update(new Seq<>());
+    assertTrue(motion.motions.isEmpty());
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import arc.math.geom.Vec2;
+
+import mindustry.Vars;
+
+
+public class PassabilityTest {
+  static final float tile = Vars.tilesize;
+  
+  @AfterEach
+  void cleanup() {
+    Passability.grid = null;
+  }
+  
+  /** @return a grid of {@code width * height} tiles, with the tiles of {@code solids}, as {@code x, y} pairs, set. */
+  static Passability.Grid grid(int width, int height, int... solids) {
+    Passability.Grid grid = new Passability.Grid(width, height);
+    for (int i=0; i<solids.length; i+=2) grid.set(solids[i], solids[i+1]);
+    return grid;
+  }
+  
+  @Test
+  void bitset() {
+    // 13 * 10 tiles, so rows are not aligned on words
+    Passability.Grid grid = new Passability.Grid(13, 10);
+    assertEquals(3, grid.bits.length);
+    
+    int[] tiles = {0, 0, 12, 4, 11, 4, 12, 9, 5, 5};
+    for (int i=0; i<tiles.length; i+=2) grid.set(tiles[i], tiles[i+1]);
+    for (int y=0; y<10; y++) {
+      for (int x=0; x<13; x++) {
+        boolean set = false;
+        for (int i=0; i<tiles.length; i+=2) set |= tiles[i] == x && tiles[i+1] == y;
+        assertEquals(set, grid.get(x, y), x + "," + y);
+      }
+    }
+    
+    grid.clear(12, 4);
+    assertFalse(grid.get(12, 4));
+    assertTrue(grid.get(11, 4));
+  }
+  
+  @Test
+  void outsideIsSolid() {
+    Passability.Grid grid = new Passability.Grid(4, 4);
+    assertTrue(grid.get(-1, 0));
+    assertTrue(grid.get(0, 4));
+    assertTrue(grid.get(4, 0));
+    assertFalse(grid.get(3, 3));
+  }
+  
+  @Test
+  void solid() {
+    assertFalse(Passability.solid(3 * tile, 4 * tile), "no grid");
+    
+    Passability.grid = grid(8, 8, 3, 4);
+    assertTrue(Passability.solid(3 * tile, 4 * tile));
+    // Positions are rounded to the nearest tile
+    assertTrue(Passability.solid(3.4f * tile, 3.6f * tile));
+    assertFalse(Passability.solid(3.6f * tile, 4 * tile));
+    assertTrue(Passability.solid(-tile, 0));
+  }
+  
+  @Test
+  void free() {
+    // Wall at x=3, with the tile at the left of (3, 4) also solid
+    Passability.grid = grid(8, 8, 3, 3, 3, 4, 3, 5, 2, 4);
+    Vec2 position = new Vec2(3 * tile, 4 * tile);
+    assertTrue(Passability.free(position));
+    assertEquals(4 * tile, position.x);
+    assertEquals(4 * tile, position.y);
+    
+    position.set(5 * tile, 5 * tile);
+    assertFalse(Passability.free(position), "already free");
+    assertEquals(5 * tile, position.x);
+  }
+  
+  @Test
+  void noFreeTile() {
+    int radius = Passability.searchRadius;
+    Passability.searchRadius = 1;
+    try {
+      Passability.grid = grid(3, 3, 0, 0, 1, 0, 2, 0, 0, 1, 1, 1, 2, 1, 0, 2, 1, 2, 2, 2);
+      Vec2 position = new Vec2(tile, tile);
+      assertFalse(Passability.free(position));
+      assertEquals(tile, position.x);
+      assertEquals(tile, position.y);
+    } finally {
+      Passability.searchRadius = radius;
+    }
+  }
+  
+  @Test
+  void offsetsByDistance() {
+    int[] offsets = Passability.offsets();
+    int last = 0, radius = Passability.searchRadius;
+    for (int i=0; i<offsets.length; i+=2) {
+      int distance = offsets[i] * offsets[i] + offsets[i+1] * offsets[i+1];
+      assertTrue(distance >= last);
+      assertTrue(distance > 0 && distance <= radius * radius);
+      last = distance;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import arc.math.geom.Vec2;
+import arc.struct.Seq;
+
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+public class PositionStreamTest {
+  TestEntities entities;
+  PositionStream<TraceEntity> stream;
+  Placements<TraceEntity> placements = new Placements<>();
+  /** Deliveries waiting to be run, to control when subscribers are busy. */
+  Seq<Runnable> queued = new Seq<>();
+  
+  @BeforeEach
+  void setup() {
+    entities = new TestEntities();
+    FollowManager<TraceEntity> manager = entities.manager();
+    stream = manager.positions;
+    Follow<TraceEntity> follow = manager.add(TestEntities.mode("arc"), entities.add("leader"));
+    for (int i=0; i<3; i++) {
+      TraceEntity follower = entities.add("follower" + i);
+      follow.add(follower);
+      placements.add(follow, follower, new Vec2(i * 10, i * 20));
+    }
+  }
+  
+  void runQueued() {
+    while (!queued.isEmpty()) queued.remove(0).run();
+  }
+  
+  @Test
+  void delivery() {
+    Seq<String> received = new Seq<>();
+    PositionStream<TraceEntity>.Subscription subscription = stream.subscribe(b -> {
+      for (int i=0; i<b.size(); i++) received.add(b.id(i) + ":" + b.x(i) + "," + b.y(i));
+    }, Runnable::run);
+    stream.publish(placements);
+    
+    Seq<String> expected = new Seq<>();
+    for (int i=0; i<3; i++) expected.add(entities.online.get("follower" + i).id + ":" + i * 10f + "," + i * 20f);
+    assertEquals(expected, received);
+    assertEquals(1, subscription.delivered.get());
+  }
+  
+  @Test
+  void releasedBatchesAreReused() {
+    Seq<PositionStream<TraceEntity>.Batch> batches = new Seq<>();
+    stream.subscribe(batches::add, Runnable::run);
+    stream.publish(placements);
+    stream.publish(placements);
+    
+    assertSame(batches.get(0), batches.get(1));
+    assertEquals(0, batches.get(0).refs.get());
+    assertEquals(1, stream.pool.size());
+    assertEquals(1, batches.get(1).sequence());
+  }
+  
+  @Test
+  void busySubscriberDropsBatches() {
+    Seq<PositionStream<TraceEntity>.Batch> batches = new Seq<>();
+    PositionStream<TraceEntity>.Subscription subscription = stream.subscribe(batches::add, queued::add);
+    stream.publish(placements);
+    stream.publish(placements);
+    stream.publish(placements);
+    assertEquals(1, queued.size);
+    // The dropped batches are released
+    assertEquals(1, stream.pool.size());
+    
+    runQueued();
+    assertEquals(1, batches.size);
+    assertEquals(2, batches.first().sequence());
+    assertEquals(1, subscription.delivered.get());
+    assertEquals(2, subscription.dropped.get());
+    assertEquals(2, stream.pool.size());
+  }
+  
+  @Test
+  void sharedBetweenSubscribers() {
+    Seq<PositionStream<TraceEntity>.Batch> direct = new Seq<>(), later = new Seq<>();
+    stream.subscribe(direct::add, Runnable::run);
+    stream.subscribe(later::add, queued::add);
+    stream.publish(placements);
+    
+    PositionStream<TraceEntity>.Batch batch = direct.first();
+    assertEquals(1, batch.refs.get(), "held by the busy subscriber");
+    assertTrue(stream.pool.isEmpty());
+    
+    runQueued();
+    assertSame(batch, later.first());
+    assertEquals(0, batch.refs.get());
+    assertEquals(1, stream.pool.size());
+  }
+  
+  @Test
+  void cancelReleasesPending() {
+    PositionStream<TraceEntity>.Subscription subscription = stream.subscribe(b -> fail("cancelled"), queued::add);
+    stream.publish(placements);
+    subscription.cancel();
+    
+    assertEquals(1, stream.pool.size());
+    assertFalse(stream.hasSubscribers());
+    runQueued();
+    assertEquals(0, subscription.delivered.get());
+  }
+  
+  @Test
+  void failingSubscriberReleases() {
+    PositionStream<TraceEntity>.Subscription subscription = stream.subscribe(b -> {
+      throw new IllegalStateException("expected");
+    }, Runnable::run);
+    stream.publish(placements);
+    
+    assertEquals(1, stream.pool.size());
+    assertEquals(0, subscription.delivered.get());
+    assertTrue(stream.hasSubscribers());
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of Player Follow. The plugin that allow players to follow each others.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2025 ZetaMap
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fr.zetamap.playerfollow.api;
+
+import arc.struct.ObjectMap;
+
+import fr.zetamap.playerfollow.FollowModes;
+import fr.zetamap.playerfollow.FollowReplay.TraceEntity;
+
+
+/** Synthetic entities and headless managers for tests. */
+public class TestEntities {
+  static {
+    // Registers the default modes
+    FollowModes.arc.getClass();
+  }
+  
+  /** Online entities, by key. */
+  public final ObjectMap<String, TraceEntity> online = new ObjectMap<>();
+  private int nextId;
+  
+  /** @return a new headless manager, updated with {@link FollowManager#updateNow(float, float)}. */
+  public FollowManager<TraceEntity> manager() {
+    return new FollowManager<>(TraceEntity.accessor, (f, p) -> {}, f -> f.key, 1);
+  }
+  
+  /** @return a new online entity at {@code x}, {@code y}. */
+  public TraceEntity add(String key, float x, float y) {
+    TraceEntity entity = new TraceEntity(nextId++, key);
+    entity.x = x;
+    entity.y = y;
+    entity.hitSize = 8f;
+    online.put(key, entity);
+    return entity;
+  }
+  
+  public TraceEntity add(String key) {
+    return add(key, 0, 0);
+  }
+  
+  public static FollowMode<TraceEntity> mode(String name) {
+    return FollowMode.of(name);
+  }
+}